@@ -7,13 +7,12 @@ import io.swagger.client.model.AlbumInfo;
 import io.swagger.client.model.AlbumsProfile;
 import io.swagger.client.model.ImageMetaData;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicLong;
-import model.RequestRecord;
-import model.RequestType;
+import metrics.LiveMetrics;
+import metrics.RecordRing;
+import metrics.ThreadLatencyRecorder;
+import model.Endpoint;
 
 public class AlbumRequestThread implements Runnable{
 
@@ -26,19 +25,28 @@ public class AlbumRequestThread implements Runnable{
   private Integer loopCnt;
   private String ipAddress;
   private CountDownLatch countDownLatch;
-  private List<List<RequestRecord>> records;
-  private List<RequestRecord> threadRecords;
+  private RecordRing recordRing;
   private AtomicLong success;
+  private ThreadLatencyRecorder latencyRecorder;
+  private LiveMetrics liveMetrics;
 
+  /**
+   * @param recordRing      where the thread streams its raw request records, or null to keep only
+   *                        the latency histograms
+   * @param latencyRecorder this thread's latency histograms
+   * @param liveMetrics     the per-second reporter every attempt, failed or not, is counted in
+   */
   public AlbumRequestThread(
       Integer loopCnt, String ipAddress, CountDownLatch countDownLatch,
-      List<List<RequestRecord>> records, AtomicLong success) {
+      RecordRing recordRing, AtomicLong success, ThreadLatencyRecorder latencyRecorder,
+      LiveMetrics liveMetrics) {
     this.loopCnt = loopCnt;
     this.ipAddress = ipAddress;
     this.countDownLatch = countDownLatch;
-    this.records = records;
-    this.threadRecords = Collections.synchronizedList(new ArrayList<>());
+    this.recordRing = recordRing;
     this.success = success;
+    this.latencyRecorder = latencyRecorder;
+    this.liveMetrics = liveMetrics;
     this.apiInstance = new DefaultApi();
     this.likeApi = new LikeApi();
     this.apiInstance.getApiClient().setBasePath(this.ipAddress);
@@ -58,41 +66,44 @@ public class AlbumRequestThread implements Runnable{
         e.printStackTrace();
       }
     }
-    this.records.add(this.threadRecords);
     this.countDownLatch.countDown();
   }
 
   private void reviewAlbum(String albumID, boolean like) {
     String likeOrNot = like ? "like" : "dislike";
+    long start = System.currentTimeMillis();
+    long startNanos = System.nanoTime();
     try {
-      likeApi.reviewWithHttpInfo(likeOrNot, albumID);
+      ApiResponse<Void> res = likeApi.reviewWithHttpInfo(likeOrNot, albumID);
+      long latencyNanos = System.nanoTime() - startNanos;
+      this.latencyRecorder.record(Endpoint.POST_REVIEW, latencyNanos);
+      addRecord(start, Endpoint.POST_REVIEW, latencyNanos, res.getStatusCode());
       this.success.incrementAndGet();
     } catch (ApiException e) {
+      this.liveMetrics.record(Endpoint.POST_REVIEW, System.nanoTime() - startNanos, e.getCode());
       e.printStackTrace();
     }
   }
 
   private boolean performGetRequest() throws RetryLimitException{
     int errCnt = 0;
-    long start = System.currentTimeMillis();
     while (errCnt < RETRY_LIMIT) {
+      // Latency is per attempt, for successes and failures alike, so retries never inflate it
+      long start = System.currentTimeMillis();
+      long attemptNanos = System.nanoTime();
       try {
         ApiResponse<AlbumInfo> res = apiInstance.getAlbumByKeyWithHttpInfo("1");
         if (res.getStatusCode() < 300) {
           this.success.incrementAndGet();
-          long end = System.currentTimeMillis();
-          long latency = end - start;
-          RequestRecord record = RequestRecord.builder()
-              .startTime(start)
-              .requestType(RequestType.GET)
-              .latency(latency)
-              .responseCode(res.getStatusCode())
-              .build();
-          this.threadRecords.add(record);
+          long latencyNanos = System.nanoTime() - attemptNanos;
+          this.latencyRecorder.record(Endpoint.GET_ALBUM, latencyNanos);
+          addRecord(start, Endpoint.GET_ALBUM, latencyNanos, res.getStatusCode());
           return true;
         }
+        this.liveMetrics.record(Endpoint.GET_ALBUM, System.nanoTime() - attemptNanos, res.getStatusCode());
         errCnt++;
       } catch (ApiException e) {
+        this.liveMetrics.record(Endpoint.GET_ALBUM, System.nanoTime() - attemptNanos, e.getCode());
         errCnt++;
         e.printStackTrace();
       }
@@ -102,31 +113,36 @@ public class AlbumRequestThread implements Runnable{
 
   private String performPostRequest() throws RetryLimitException {
     int errCnt = 0;
-    long start = System.currentTimeMillis();
       while (errCnt < RETRY_LIMIT) {
+        // Latency is per attempt, as in performGetRequest
+        long start = System.currentTimeMillis();
+        long attemptNanos = System.nanoTime();
         try {
           ApiResponse<ImageMetaData> res = apiInstance.newAlbumWithHttpInfo(
               imageFile, new AlbumsProfile());
           String albumID = res.getData().getAlbumID();
           if (res.getStatusCode() < 300) {
             this.success.incrementAndGet();
-            long end = System.currentTimeMillis();
-            long latency = end - start;
-            RequestRecord record = RequestRecord.builder()
-                .startTime(start)
-                .requestType(RequestType.POST)
-                .latency(latency)
-                .responseCode(res.getStatusCode())
-                .build();
-            this.threadRecords.add(record);
+            long latencyNanos = System.nanoTime() - attemptNanos;
+            this.latencyRecorder.record(Endpoint.POST_ALBUM, latencyNanos);
+            addRecord(start, Endpoint.POST_ALBUM, latencyNanos, res.getStatusCode());
             return albumID;
           }
+          this.liveMetrics.record(Endpoint.POST_ALBUM, System.nanoTime() - attemptNanos, res.getStatusCode());
           errCnt++;
         } catch (ApiException e) {
+          this.liveMetrics.record(Endpoint.POST_ALBUM, System.nanoTime() - attemptNanos, e.getCode());
           errCnt++;
           e.printStackTrace();
         }
       }
       throw new RetryLimitException(RETRY_LIMIT_EXCEPTION_MSG);
   }
+
+  private void addRecord(long start, Endpoint endpoint, long latencyNanos, int responseCode) {
+    this.liveMetrics.record(endpoint, latencyNanos, responseCode);
+    if (this.recordRing != null) {
+      this.recordRing.write(start, endpoint, latencyNanos, responseCode);
+    }
+  }
 }
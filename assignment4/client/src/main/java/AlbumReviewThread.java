@@ -4,6 +4,9 @@ import io.swagger.client.model.Likes;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import metrics.LiveMetrics;
+import metrics.ThreadLatencyRecorder;
+import model.Endpoint;
 import redis.clients.jedis.Jedis;
 import utils.RedisUtil;
 
@@ -13,13 +16,18 @@ public class AlbumReviewThread implements Runnable{
   private AtomicLong getReviewSuccess;
   private LikeApi likeApi;
   private AtomicBoolean threadGroupFinished;
+  private ThreadLatencyRecorder latencyRecorder;
+  private LiveMetrics liveMetrics;
 
-  public AlbumReviewThread(String ipAddress, AtomicLong getReviewSuccess, AtomicBoolean threadGroupFinished) {
+  public AlbumReviewThread(String ipAddress, AtomicLong getReviewSuccess, AtomicBoolean threadGroupFinished,
+      ThreadLatencyRecorder latencyRecorder, LiveMetrics liveMetrics) {
     this.ipAddress = ipAddress;
     this.getReviewSuccess = getReviewSuccess;
     this.likeApi = new LikeApi();
     this.likeApi.getApiClient().setBasePath(this.ipAddress);
     this.threadGroupFinished = threadGroupFinished;
+    this.latencyRecorder = latencyRecorder;
+    this.liveMetrics = liveMetrics;
   }
 
   @Override
@@ -30,13 +38,21 @@ public class AlbumReviewThread implements Runnable{
   }
 
   private void performReviewRequest() {
+    long randomID;
     try (Jedis jedis = RedisUtil.getJedis()) {
       Long totKeys = jedis.dbSize();
-      long randomID = Math.abs(new Random().nextLong()) % totKeys;
+      randomID = Math.abs(new Random().nextLong()) % totKeys;
+    }
+    long startNanos = System.nanoTime();
+    try {
       Likes likes = likeApi.getLikes(randomID + "");
+      long latencyNanos = System.nanoTime() - startNanos;
+      this.latencyRecorder.record(Endpoint.GET_REVIEW, latencyNanos);
+      this.liveMetrics.record(Endpoint.GET_REVIEW, latencyNanos, 200);
       System.out.println("id: " + randomID + ", likes: " + likes.getLikes() + ", dislikes: " + likes.getDislikes());
       this.getReviewSuccess.incrementAndGet();
     } catch (ApiException e) {
+      this.liveMetrics.record(Endpoint.GET_REVIEW, System.nanoTime() - startNanos, e.getCode());
       e.printStackTrace();
     }
   }
@@ -27,6 +27,15 @@ public class Main {
 //        2, "http://cs6650LoadBalancer-1902338145.us-west-2.elb.amazonaws.com:80/CS6650Assignment2-Server_war");
 //    executor.execute();
 
+    // Open model: ramp from 100 to 2000 reviews/s over 60s, hold for 60s, at most 500 in flight
+//    OpenModelLoadGenerator generator = new OpenModelLoadGenerator(
+//        "http://localhost:8080/CS6650Assignment3_Server_war_exploded", 100, 2000, 60, 60, 500);
+//    generator.execute();
+    // Same profile on the async engine: one shared OkHttp dispatcher drives up to 5000 requests in flight
+//    OpenModelLoadGenerator asyncGenerator = new OpenModelLoadGenerator(
+//        "http://localhost:8080/CS6650Assignment3_Server_war_exploded", 100, 2000, 60, 60, 5000, Engine.ASYNC);
+//    asyncGenerator.execute();
+
     // Go Server
 //    MultiRequestExecutor executor = new MultiRequestExecutor(10, 20,
 //        2, "http://34.219.119.104:8080");
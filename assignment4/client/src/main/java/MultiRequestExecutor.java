@@ -1,59 +1,83 @@
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import model.RequestRecord;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
+import metrics.LatencyReport;
+import metrics.LiveMetrics;
+import metrics.RecordFileConverter;
+import metrics.RecordRing;
+import metrics.RecordSink;
+import model.Phase;
+import org.HdrHistogram.Histogram;
 
 public class MultiRequestExecutor {
 
+  private final String RECORD_BINARY_FILE_PATH = "src/main/java/generatedFile/requestRecord.bin";
   private final String RECORD_FILE_PATH = "src/main/java/generatedFile/requestRecord.csv";
   private final String THROUGHPUT_FILE_PATH = "src/main/java/generatedFile/throughputPerSec.csv";
+  private final String LATENCY_FILE_PATH = "src/main/java/generatedFile/latencyPercentiles.csv";
+  private final String INTERVAL_LOG_FILE_PATH = "src/main/java/generatedFile/intervalLog.csv";
+  private final int RECORD_RING_CAPACITY = 4096;
   private final Integer loopCnt = 100;
   private Integer threadGroupSize;
   private Integer numThreadGroups;
   private Integer delay;
   private String ipAddress;
-  private List<List<RequestRecord>> records;
+  private boolean recordRawRequests;
+  private RecordSink recordSink;
+  private LiveMetrics liveMetrics;
   private AtomicLong success;
   private AtomicLong getReviewSuccess;
   private final AtomicBoolean threadGroupFinished = new AtomicBoolean(false);
+  private final LatencyReport latencyReport = new LatencyReport();
 
 
   public MultiRequestExecutor(Integer threadGroupSize, Integer numThreadGroups,
       Integer delay, String ipAddress) {
+    this(threadGroupSize, numThreadGroups, delay, ipAddress, false);
+  }
+
+  /**
+   * @param recordRawRequests also stream one record per request to a binary file during the run,
+   *                          converted to CSV (with the throughput per second) at the end. Latency
+   *                          percentiles come from per-thread histograms either way.
+   */
+  public MultiRequestExecutor(Integer threadGroupSize, Integer numThreadGroups,
+      Integer delay, String ipAddress, boolean recordRawRequests) {
     this.threadGroupSize = threadGroupSize;
     this.numThreadGroups = numThreadGroups;
     this.delay = delay;
     this.ipAddress = ipAddress;
-    this.records = Collections.synchronizedList(new ArrayList<>());
+    this.recordRawRequests = recordRawRequests;
     this.success = new AtomicLong(0L);
     this.getReviewSuccess = new AtomicLong(0L);
   }
 
   public void execute() throws InterruptedException {
-    FileWriter fileWriter;
-    CSVPrinter csvPrinter;
     try {
-      fileWriter = new FileWriter(RECORD_FILE_PATH, false);
-      csvPrinter = new CSVPrinter(fileWriter, CSVFormat.DEFAULT);
-      csvPrinter.printRecord("startTime", "requestType", "latency", "responseCode");
+      this.liveMetrics = new LiveMetrics(INTERVAL_LOG_FILE_PATH);
     } catch (IOException e) {
       e.printStackTrace();
       return;
     }
+    this.liveMetrics.start();
+    if (this.recordRawRequests) {
+      try {
+        this.recordSink = new RecordSink(RECORD_BINARY_FILE_PATH, RECORD_RING_CAPACITY);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return;
+      }
+      this.recordSink.start();
+    }
 
     CountDownLatch countDownLatch = new CountDownLatch(10);
     for (int i = 0; i < 10; i++) {
       AlbumRequestThread albumRequestThread = new AlbumRequestThread(100, this.ipAddress,
-          countDownLatch, this.records, this.success);
+          countDownLatch, newRecordRing(Phase.WARMUP), this.success, this.latencyReport.newRecorder(Phase.WARMUP),
+          this.liveMetrics);
       Thread thread = new Thread(albumRequestThread);
       thread.start();
     }
@@ -61,13 +85,14 @@ public class MultiRequestExecutor {
     countDownLatch.await();
 
     long startTime = System.currentTimeMillis();
-    ExecutorService executorService = Executors.newFixedThreadPool(3);
+    List<Thread> reviewThreads = new ArrayList<>();
     System.out.println("START");
     countDownLatch = new CountDownLatch(this.threadGroupSize * this.numThreadGroups);
     for (int i = 0; i < this.numThreadGroups; i++) {
       for (int j = 0; j < this.threadGroupSize; j++) {
         AlbumRequestThread albumRequestThread = new AlbumRequestThread(loopCnt, this.ipAddress,
-            countDownLatch, this.records, this.success);
+            countDownLatch, newRecordRing(Phase.LOAD), this.success, this.latencyReport.newRecorder(Phase.LOAD),
+            this.liveMetrics);
         Thread thread = new Thread(albumRequestThread);
         thread.start();
       }
@@ -76,8 +101,11 @@ public class MultiRequestExecutor {
         // start 3 review query threads when the first group is complete
         for (int k = 0; k < 3; k++) {
           AlbumReviewThread albumReviewThread = new AlbumReviewThread(
-              this.ipAddress, this.getReviewSuccess, this.threadGroupFinished);
-          new Thread(albumReviewThread).start();
+              this.ipAddress, this.getReviewSuccess, this.threadGroupFinished,
+              this.latencyReport.newRecorder(Phase.LOAD), this.liveMetrics);
+          Thread thread = new Thread(albumReviewThread);
+          reviewThreads.add(thread);
+          thread.start();
         }
       }
       Thread.sleep(delay * 1000);
@@ -86,42 +114,26 @@ public class MultiRequestExecutor {
     countDownLatch.await();
     // stop 3 review query threads when all the groups are complete
     this.threadGroupFinished.set(true);
-
-    long endTime = System.currentTimeMillis();
-
-    List<RequestRecord> allRecords = new ArrayList<>();
-    for (List<RequestRecord> record : records) {
-      allRecords.addAll(record);
+    for (Thread reviewThread : reviewThreads) {
+      reviewThread.join();
     }
-    writeRequestRecord(csvPrinter, allRecords);
 
-    double wallTime = (endTime - startTime) / 1000d - delay * numThreadGroups;
-    Collections.sort(allRecords, (a, b) -> (int)(a.getLatency() - b.getLatency()));
-    long meanLatency = -1, medianLatency = -1, p99Latency = -1, minLatency = -1, maxLatency = -1;
-    int recordCnt = allRecords.size();
-
-    // stat calc
-    if (recordCnt > 0) {
-      meanLatency = (allRecords.stream().mapToLong(a -> a.getLatency()).sum() / recordCnt);
-      medianLatency = allRecords.get(recordCnt / 2).getLatency();
-      p99Latency = allRecords.get(recordCnt / 100 * 99).getLatency();
-      minLatency = allRecords.get(0).getLatency();
-      maxLatency = allRecords.get(recordCnt - 1).getLatency();
-    }
-
-    // throughput per sec calc, output path: THROUGHPUT_FILE_PATH
-    Collections.sort(allRecords, (a, b) -> (int)(a.getStartTime() - b.getStartTime()));
+    long endTime = System.currentTimeMillis();
     try {
-      fileWriter = new FileWriter(THROUGHPUT_FILE_PATH, false);
-      csvPrinter = new CSVPrinter(fileWriter, CSVFormat.DEFAULT);
-      calcThroughputPerSec(csvPrinter, allRecords, startTime);
+      this.liveMetrics.close();
     } catch (IOException e) {
       e.printStackTrace();
-      return;
     }
 
+    double wallTime = (endTime - startTime) / 1000d - delay * numThreadGroups;
+    this.latencyReport.merge();
+    Histogram loadLatency = this.latencyReport.total(Phase.LOAD);
+
+    if (this.recordRawRequests) {
+      writeRawRecords(startTime);
+    }
     try {
-      csvPrinter.close();
+      this.latencyReport.writeCsv(LATENCY_FILE_PATH);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -129,11 +141,12 @@ public class MultiRequestExecutor {
     System.out.println("Wall Time: " + wallTime + "s");
     System.out.println("Throughput: " +
         ((long)this.numThreadGroups * this.threadGroupSize * this.loopCnt * 4 + this.getReviewSuccess.get()) / wallTime);
-    System.out.println("Mean Response Time: " + meanLatency + "ms");
-    System.out.println("Median Response Time: " + medianLatency + "ms");
-    System.out.println("P99 Response Time: " + p99Latency + "ms");
-    System.out.println("Minimum Response Time: " + minLatency + "ms");
-    System.out.println("Maximum Response Time: " + maxLatency + "ms");
+    System.out.printf("Mean Response Time: %.2fms%n", loadLatency.getMean() / 1000d);
+    System.out.printf("Median Response Time: %.2fms%n", loadLatency.getValueAtPercentile(50) / 1000d);
+    System.out.printf("P99 Response Time: %.2fms%n", loadLatency.getValueAtPercentile(99) / 1000d);
+    System.out.printf("Minimum Response Time: %.2fms%n", loadLatency.getMinValue() / 1000d);
+    System.out.printf("Maximum Response Time: %.2fms%n", loadLatency.getMaxValue() / 1000d);
+    this.latencyReport.print();
     System.out.println("Success Album Request Count: " + this.success.get());
     System.out.println("Success Get Review Request Count: " + this.getReviewSuccess.get());
     System.out.println("Failure Request Count: " +
@@ -141,41 +154,21 @@ public class MultiRequestExecutor {
     System.out.println("END");
   }
 
-  private void writeRequestRecord(final CSVPrinter csvPrinter, final List<RequestRecord> records) {
-    for (RequestRecord record : records) {
-      try {
-        csvPrinter.printRecord(
-            record.getStartTime(), record.getRequestType(),
-            record.getLatency(), record.getResponseCode());
-      } catch (IOException e) {
-        e.printStackTrace();
-      }
-    }
+  private RecordRing newRecordRing(Phase phase) {
+    return this.recordSink == null ? null : this.recordSink.newRing(phase);
   }
 
-  private void calcThroughputPerSec(
-      final CSVPrinter csvPrinter, final List<RequestRecord> records, final long initStartTime)
-      throws IOException {
-    csvPrinter.printRecord("Time(S)", "Throughput");
-    long startTime = records.get(0).getStartTime();
-    int sec = 1;
-    long throughput = 0;
-
-    for (RequestRecord record : records) {
-      long curStartTime = record.getStartTime();
-      if (curStartTime < initStartTime) {
-        startTime = curStartTime;
-        continue;
-      }
-
-      if (curStartTime - startTime < 1000) {
-        throughput++;
-      } else {
-        csvPrinter.printRecord(sec, throughput);
-        throughput = 1;
-        sec++;
-        startTime = curStartTime;
+  private void writeRawRecords(long startTime) {
+    try {
+      this.recordSink.close();
+      if (this.recordSink.getDroppedCount() > 0) {
+        System.out.println("Raw records dropped because the record sink fell behind: "
+            + this.recordSink.getDroppedCount());
       }
+      RecordFileConverter.toCsv(RECORD_BINARY_FILE_PATH, RECORD_FILE_PATH);
+      RecordFileConverter.writeThroughputPerSec(RECORD_BINARY_FILE_PATH, THROUGHPUT_FILE_PATH, startTime);
+    } catch (IOException e) {
+      e.printStackTrace();
     }
   }
 }
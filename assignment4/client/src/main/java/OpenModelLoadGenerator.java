@@ -0,0 +1,336 @@
+import com.squareup.okhttp.Call;
+import io.swagger.client.ApiCallback;
+import io.swagger.client.ApiClient;
+import io.swagger.client.ApiException;
+import io.swagger.client.ApiResponse;
+import io.swagger.client.api.DefaultApi;
+import io.swagger.client.api.LikeApi;
+import io.swagger.client.model.AlbumsProfile;
+import io.swagger.client.model.ImageMetaData;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import metrics.LatencyReport;
+import metrics.LiveMetrics;
+import metrics.ThreadLatencyRecorder;
+import model.Endpoint;
+import model.Engine;
+import model.Phase;
+import org.HdrHistogram.Histogram;
+import utils.SharedApiClient;
+
+/**
+ * Open-model load generator: reviews are sent at a target arrival rate, whether or not earlier
+ * requests have returned, instead of each thread waiting for its own response before sending again.
+ * The rate ramps linearly from startRps to endRps over rampSeconds and is then held at endRps for
+ * holdSeconds (use startRps == endRps and rampSeconds == 0 for a constant rate).
+ *
+ * A single scheduler thread computes the intended send time of every arrival and hands it to a
+ * worker pool. Response time is measured from the intended send time, so time spent waiting for
+ * a free worker or connection counts against the service (no coordinated omission). Service time
+ * is measured from the actual send, taken by a network interceptor just before the request is
+ * written to its connection, and the time between handing the call off and that point (waiting
+ * for a dispatcher slot or a connection) is reported separately as queue time.
+ *
+ * All requests share one ApiClient whose OkHttp dispatcher and connection pool are sized to
+ * maxConcurrency. With the SYNC engine a pool of maxConcurrency worker threads makes blocking calls.
+ * With the ASYNC engine the scheduler thread enqueues every call on the OkHttp dispatcher itself and
+ * completions are recorded from its callbacks, so no worker pool sits between the schedule and the wire.
+ */
+public class OpenModelLoadGenerator {
+
+  private final String IMG_PATH = "src/main/java/image/testimg.png";
+  private final String RESPONSE_TIME_FILE_PATH = "src/main/java/generatedFile/openModelResponseTime.csv";
+  private final String SERVICE_TIME_FILE_PATH = "src/main/java/generatedFile/openModelServiceTime.csv";
+  private final String QUEUE_TIME_FILE_PATH = "src/main/java/generatedFile/openModelQueueTime.csv";
+  private final String FAILURE_TIME_FILE_PATH = "src/main/java/generatedFile/openModelFailureTime.csv";
+  private final String INTERVAL_LOG_FILE_PATH = "src/main/java/generatedFile/openModelIntervalLog.csv";
+  private final int NUM_ALBUMS = 10;
+  // When this thread's call was last written to its connection. Both engines run a call's network
+  // interceptors and its completion on the same thread, so the completion reads its own call's time.
+  private static final ThreadLocal<long[]> SENT_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+  private String ipAddress;
+  private double startRps;
+  private double endRps;
+  private int rampSeconds;
+  private int holdSeconds;
+  private int maxConcurrency;
+  private Engine engine;
+  private final List<String> albumIDs = new ArrayList<>();
+  private final LatencyReport responseTimes = new LatencyReport();
+  private final LatencyReport serviceTimes = new LatencyReport();
+  private final LatencyReport queueTimes = new LatencyReport();
+  // Failed requests, timed from their intended send, kept apart so fast errors do not flatter the success percentiles
+  private final LatencyReport failureTimes = new LatencyReport();
+  private final ThreadLocal<ThreadLatencyRecorder> responseTimeRecorder =
+      ThreadLocal.withInitial(() -> responseTimes.newRecorder(Phase.LOAD));
+  private final ThreadLocal<ThreadLatencyRecorder> serviceTimeRecorder =
+      ThreadLocal.withInitial(() -> serviceTimes.newRecorder(Phase.LOAD));
+  private final ThreadLocal<ThreadLatencyRecorder> queueTimeRecorder =
+      ThreadLocal.withInitial(() -> queueTimes.newRecorder(Phase.LOAD));
+  private final ThreadLocal<ThreadLatencyRecorder> failureTimeRecorder =
+      ThreadLocal.withInitial(() -> failureTimes.newRecorder(Phase.LOAD));
+  private LikeApi likeApi;
+  private LiveMetrics liveMetrics;
+  private final AtomicLong success = new AtomicLong(0L);
+  private final AtomicLong failure = new AtomicLong(0L);
+
+  public OpenModelLoadGenerator(String ipAddress, double startRps, double endRps,
+      int rampSeconds, int holdSeconds, int maxConcurrency) {
+    this(ipAddress, startRps, endRps, rampSeconds, holdSeconds, maxConcurrency, Engine.SYNC);
+  }
+
+  /**
+   * @param maxConcurrency the most requests in flight at once (worker threads for SYNC, dispatcher
+   *                       slots for ASYNC)
+   * @param engine         how requests are sent
+   */
+  public OpenModelLoadGenerator(String ipAddress, double startRps, double endRps,
+      int rampSeconds, int holdSeconds, int maxConcurrency, Engine engine) {
+    if (startRps <= 0 || endRps <= 0) {
+      throw new IllegalArgumentException("Arrival rates must be positive");
+    }
+    this.ipAddress = ipAddress;
+    this.startRps = startRps;
+    this.endRps = endRps;
+    this.rampSeconds = rampSeconds;
+    this.holdSeconds = holdSeconds;
+    this.maxConcurrency = maxConcurrency;
+    this.engine = engine;
+  }
+
+  public void execute() throws InterruptedException {
+    ApiClient apiClient = SharedApiClient.create(this.ipAddress, this.maxConcurrency);
+    apiClient.getHttpClient().networkInterceptors().add(chain -> {
+      SENT_NANOS.get()[0] = System.nanoTime();
+      return chain.proceed(chain.request());
+    });
+    this.likeApi = new LikeApi(apiClient);
+    if (!createAlbums()) {
+      System.out.println("Failed to create albums to review, aborting");
+      return;
+    }
+    try {
+      this.liveMetrics = new LiveMetrics(INTERVAL_LOG_FILE_PATH);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return;
+    }
+    ExecutorService workers = this.engine == Engine.SYNC ? Executors.newFixedThreadPool(this.maxConcurrency) : null;
+    // Released once per finished request, so the end of the run can wait for the stragglers
+    Semaphore finished = new Semaphore(0);
+    System.out.println("START");
+    this.liveMetrics.start();
+
+    long scheduled = 0;
+    long maxSchedulerLagNanos = 0;
+    long totalNanos = TimeUnit.SECONDS.toNanos(this.rampSeconds + this.holdSeconds);
+    long begin = System.nanoTime();
+    long intended = begin;
+    while (intended - begin < totalNanos) {
+      long now;
+      while ((now = System.nanoTime()) < intended) {
+        LockSupport.parkNanos(intended - now);
+      }
+      maxSchedulerLagNanos = Math.max(maxSchedulerLagNanos, now - intended);
+      final long sendAt = intended;
+      if (workers != null) {
+        workers.execute(() -> {
+          sendReview(sendAt);
+          finished.release();
+        });
+      } else {
+        sendReviewAsync(sendAt, finished);
+      }
+      scheduled++;
+      intended += (long) (TimeUnit.SECONDS.toNanos(1) / rateAt(intended - begin));
+    }
+    double scheduleSeconds = (System.nanoTime() - begin) / 1e9;
+
+    finished.acquire((int) scheduled);
+    if (workers != null) {
+      workers.shutdown();
+    }
+    apiClient.getHttpClient().getDispatcher().getExecutorService().shutdown();
+    double wallTime = (System.nanoTime() - begin) / 1e9;
+    try {
+      this.liveMetrics.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    this.responseTimes.merge();
+    this.serviceTimes.merge();
+    this.queueTimes.merge();
+    this.failureTimes.merge();
+    Histogram responseTime = this.responseTimes.get(Phase.LOAD, Endpoint.POST_REVIEW);
+    Histogram serviceTime = this.serviceTimes.get(Phase.LOAD, Endpoint.POST_REVIEW);
+    Histogram queueTime = this.queueTimes.get(Phase.LOAD, Endpoint.POST_REVIEW);
+    Histogram failureTime = this.failureTimes.get(Phase.LOAD, Endpoint.POST_REVIEW);
+    try {
+      this.responseTimes.writeCsv(RESPONSE_TIME_FILE_PATH);
+      this.serviceTimes.writeCsv(SERVICE_TIME_FILE_PATH);
+      this.queueTimes.writeCsv(QUEUE_TIME_FILE_PATH);
+      this.failureTimes.writeCsv(FAILURE_TIME_FILE_PATH);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+
+    double targetRps = scheduled / scheduleSeconds;
+    double achievedRps = this.success.get() / wallTime;
+    System.out.println("Engine: " + this.engine);
+    System.out.println("Wall Time: " + wallTime + "s");
+    System.out.printf("Target Rate: %.1f/s (%d requests scheduled)%n", targetRps, scheduled);
+    System.out.printf("Achieved Throughput: %.1f/s (%.1f%% short of target)%n",
+        achievedRps, Math.max(0, (1 - achievedRps / targetRps) * 100));
+    System.out.printf("Scheduler Max Lag: %.2fms%n", maxSchedulerLagNanos / 1e6);
+    System.out.printf("Response Time (from intended send) mean/p50/p99/p99.9/max: %.2f/%.2f/%.2f/%.2f/%.2fms%n",
+        responseTime.getMean() / 1000d, responseTime.getValueAtPercentile(50) / 1000d,
+        responseTime.getValueAtPercentile(99) / 1000d, responseTime.getValueAtPercentile(99.9) / 1000d,
+        responseTime.getMaxValue() / 1000d);
+    System.out.printf("Service Time (from actual send) mean/p50/p99/p99.9/max: %.2f/%.2f/%.2f/%.2f/%.2fms%n",
+        serviceTime.getMean() / 1000d, serviceTime.getValueAtPercentile(50) / 1000d,
+        serviceTime.getValueAtPercentile(99) / 1000d, serviceTime.getValueAtPercentile(99.9) / 1000d,
+        serviceTime.getMaxValue() / 1000d);
+    System.out.printf("Queue Time (hand-off to actual send) mean/p50/p99/p99.9/max: %.2f/%.2f/%.2f/%.2f/%.2fms%n",
+        queueTime.getMean() / 1000d, queueTime.getValueAtPercentile(50) / 1000d,
+        queueTime.getValueAtPercentile(99) / 1000d, queueTime.getValueAtPercentile(99.9) / 1000d,
+        queueTime.getMaxValue() / 1000d);
+    System.out.printf("Failure Time (from intended send) mean/p50/p99/p99.9/max: %.2f/%.2f/%.2f/%.2f/%.2fms%n",
+        failureTime.getMean() / 1000d, failureTime.getValueAtPercentile(50) / 1000d,
+        failureTime.getValueAtPercentile(99) / 1000d, failureTime.getValueAtPercentile(99.9) / 1000d,
+        failureTime.getMaxValue() / 1000d);
+    System.out.println("Success Request Count: " + this.success.get());
+    System.out.println("Failure Request Count: " + this.failure.get());
+    System.out.println("END");
+  }
+
+  /**
+   * Returns the target arrival rate at the given offset from the start of the run.
+   */
+  private double rateAt(long offsetNanos) {
+    long rampNanos = TimeUnit.SECONDS.toNanos(this.rampSeconds);
+    if (offsetNanos >= rampNanos) {
+      return this.endRps;
+    }
+    return this.startRps + (this.endRps - this.startRps) * offsetNanos / rampNanos;
+  }
+
+  private void sendReview(long intendedNanos) {
+    long handOffNanos = System.nanoTime();
+    try {
+      ApiResponse<Void> res = this.likeApi.reviewWithHttpInfo(nextLikeOrNot(), nextAlbumID());
+      recordSuccess(intendedNanos, handOffNanos, res.getStatusCode());
+    } catch (ApiException e) {
+      recordFailure(intendedNanos, e.getCode());
+    }
+  }
+
+  /**
+   * Enqueues a review on the OkHttp dispatcher and returns at once.
+   * The call is built without progress listeners: LikeApi.reviewAsync would add a network
+   * interceptor to the shared OkHttpClient on every call.
+   */
+  private void sendReviewAsync(final long intendedNanos, final Semaphore finished) {
+    final long handOffNanos = System.nanoTime();
+    Call call;
+    try {
+      call = this.likeApi.reviewCall(nextLikeOrNot(), nextAlbumID(), null, null);
+    } catch (ApiException e) {
+      recordFailure(intendedNanos, 0);
+      finished.release();
+      return;
+    }
+    this.likeApi.getApiClient().executeAsync(call, new ApiCallback<Void>() {
+      @Override
+      public void onFailure(ApiException e, int statusCode, Map<String, List<String>> responseHeaders) {
+        recordFailure(intendedNanos, statusCode);
+        finished.release();
+      }
+
+      @Override
+      public void onSuccess(Void result, int statusCode, Map<String, List<String>> responseHeaders) {
+        recordSuccess(intendedNanos, handOffNanos, statusCode);
+        finished.release();
+      }
+
+      @Override
+      public void onUploadProgress(long bytesWritten, long contentLength, boolean done) {
+      }
+
+      @Override
+      public void onDownloadProgress(long bytesRead, long contentLength, boolean done) {
+      }
+    });
+  }
+
+  /**
+   * @param handOffNanos when the call was handed to the worker's HTTP client or the dispatcher
+   */
+  private void recordSuccess(long intendedNanos, long handOffNanos, int statusCode) {
+    long endNanos = System.nanoTime();
+    long sentNanos = takeSentNanos();
+    if (sentNanos == 0) {
+      // A response always comes through the interceptor, but never report a negative service time
+      sentNanos = handOffNanos;
+    }
+    this.responseTimeRecorder.get().record(Endpoint.POST_REVIEW, endNanos - intendedNanos);
+    this.serviceTimeRecorder.get().record(Endpoint.POST_REVIEW, endNanos - sentNanos);
+    this.queueTimeRecorder.get().record(Endpoint.POST_REVIEW, sentNanos - handOffNanos);
+    this.liveMetrics.record(Endpoint.POST_REVIEW, endNanos - intendedNanos, statusCode);
+    this.success.incrementAndGet();
+  }
+
+  private void recordFailure(long intendedNanos, int statusCode) {
+    // A call that failed before reaching the wire must not leave an older send time behind
+    takeSentNanos();
+    long failureNanos = System.nanoTime() - intendedNanos;
+    this.failureTimeRecorder.get().record(Endpoint.POST_REVIEW, failureNanos);
+    this.liveMetrics.record(Endpoint.POST_REVIEW, failureNanos, statusCode);
+    this.failure.incrementAndGet();
+  }
+
+  /**
+   * Returns and clears the send time recorded on this thread, or 0 if none was.
+   */
+  private static long takeSentNanos() {
+    long[] sent = SENT_NANOS.get();
+    long sentNanos = sent[0];
+    sent[0] = 0;
+    return sentNanos;
+  }
+
+  private String nextLikeOrNot() {
+    // Two likes for every dislike, the same mix as AlbumRequestThread
+    return ThreadLocalRandom.current().nextInt(3) != 0 ? "like" : "dislike";
+  }
+
+  private String nextAlbumID() {
+    return this.albumIDs.get(ThreadLocalRandom.current().nextInt(this.albumIDs.size()));
+  }
+
+  private boolean createAlbums() {
+    DefaultApi apiInstance = new DefaultApi(this.likeApi.getApiClient());
+    File imageFile = new File(IMG_PATH);
+    for (int i = 0; i < NUM_ALBUMS; i++) {
+      try {
+        ApiResponse<ImageMetaData> res = apiInstance.newAlbumWithHttpInfo(imageFile, new AlbumsProfile());
+        if (res.getStatusCode() < 300) {
+          this.albumIDs.add(res.getData().getAlbumID());
+        }
+      } catch (ApiException e) {
+        e.printStackTrace();
+      }
+    }
+    return !this.albumIDs.isEmpty();
+  }
+}
@@ -0,0 +1,113 @@
+package metrics;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import model.Endpoint;
+import model.Phase;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Hands out a {@link ThreadLatencyRecorder} to every request thread and merges their histograms once
+ * the threads are done, into one histogram per phase and endpoint. Values are in microseconds.
+ */
+public class LatencyReport {
+
+  private final Queue<ThreadLatencyRecorder> recorders = new ConcurrentLinkedQueue<>();
+  private final Map<Phase, Map<Endpoint, Histogram>> merged = new EnumMap<>(Phase.class);
+
+  /**
+   * Creates a recorder for one thread. Must be called before the thread starts recording.
+   */
+  public ThreadLatencyRecorder newRecorder(Phase phase) {
+    ThreadLatencyRecorder recorder = new ThreadLatencyRecorder(phase);
+    this.recorders.add(recorder);
+    return recorder;
+  }
+
+  /**
+   * Merges every recorder into the per phase and endpoint histograms. Call only after all recording
+   * threads have finished (joined or counted down a latch), so their writes are visible.
+   */
+  public void merge() {
+    this.merged.clear();
+    for (ThreadLatencyRecorder recorder : this.recorders) {
+      Map<Endpoint, Histogram> phaseHistograms = this.merged.get(recorder.getPhase());
+      if (phaseHistograms == null) {
+        phaseHistograms = new EnumMap<>(Endpoint.class);
+        this.merged.put(recorder.getPhase(), phaseHistograms);
+      }
+      for (Map.Entry<Endpoint, Histogram> entry : recorder.getHistograms().entrySet()) {
+        Histogram total = phaseHistograms.get(entry.getKey());
+        if (total == null) {
+          total = new Histogram(3);
+          phaseHistograms.put(entry.getKey(), total);
+        }
+        total.add(entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Returns the merged histogram of one phase and endpoint, or an empty one if nothing was recorded.
+   */
+  public Histogram get(Phase phase, Endpoint endpoint) {
+    Map<Endpoint, Histogram> phaseHistograms = this.merged.get(phase);
+    Histogram histogram = phaseHistograms == null ? null : phaseHistograms.get(endpoint);
+    return histogram == null ? new Histogram(3) : histogram;
+  }
+
+  /**
+   * Returns all endpoints of one phase merged into a single histogram.
+   */
+  public Histogram total(Phase phase) {
+    Histogram total = new Histogram(3);
+    Map<Endpoint, Histogram> phaseHistograms = this.merged.get(phase);
+    if (phaseHistograms != null) {
+      for (Histogram histogram : phaseHistograms.values()) {
+        total.add(histogram);
+      }
+    }
+    return total;
+  }
+
+  public void print() {
+    System.out.printf("%-8s %-12s %10s %10s %10s %10s %10s %10s %10s%n",
+        "phase", "endpoint", "count", "mean(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+    for (Map.Entry<Phase, Map<Endpoint, Histogram>> phaseEntry : this.merged.entrySet()) {
+      for (Map.Entry<Endpoint, Histogram> entry : phaseEntry.getValue().entrySet()) {
+        Histogram h = entry.getValue();
+        System.out.printf("%-8s %-12s %10d %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+            phaseEntry.getKey(), entry.getKey(), h.getTotalCount(), h.getMean() / 1000d,
+            millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9), h.getMaxValue() / 1000d);
+      }
+    }
+  }
+
+  /**
+   * Writes one CSV row per phase and endpoint with the count and percentiles in microseconds.
+   */
+  public void writeCsv(String path) throws IOException {
+    try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(path, false), CSVFormat.DEFAULT)) {
+      csvPrinter.printRecord("phase", "endpoint", "count", "meanUs", "p50Us", "p90Us", "p99Us", "p999Us",
+          "minUs", "maxUs");
+      for (Map.Entry<Phase, Map<Endpoint, Histogram>> phaseEntry : this.merged.entrySet()) {
+        for (Map.Entry<Endpoint, Histogram> entry : phaseEntry.getValue().entrySet()) {
+          Histogram h = entry.getValue();
+          csvPrinter.printRecord(phaseEntry.getKey(), entry.getKey(), h.getTotalCount(), Math.round(h.getMean()),
+              h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99),
+              h.getValueAtPercentile(99.9), h.getMinValue(), h.getMaxValue());
+        }
+      }
+    }
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1000d;
+  }
+}
@@ -0,0 +1,126 @@
+package metrics;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import model.Endpoint;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Reports throughput and latency every second while a run is going. Request threads record into
+ * per-endpoint counters split by status class and into HdrHistogram interval recorders, all without
+ * locks. Once a second a reporter thread swaps out the interval, prints one line per active
+ * endpoint (requests/s, status classes, p50, p99) and appends the same numbers to an interval log CSV.
+ */
+public class LiveMetrics implements Closeable {
+
+  private static final String[] STATUS_CLASSES = {"2xx", "3xx", "4xx", "5xx", "error"};
+  private static final int ERROR = STATUS_CLASSES.length - 1;
+  private static final Endpoint[] ENDPOINTS = Endpoint.values();
+
+  private final LongAdder[][] counts = new LongAdder[ENDPOINTS.length][STATUS_CLASSES.length];
+  private final Recorder[] latencies = new Recorder[ENDPOINTS.length];
+  private final Histogram[] intervalHistograms = new Histogram[ENDPOINTS.length];
+  private final ScheduledExecutorService reporter;
+  private final CSVPrinter intervalLog;
+  private long startMillis;
+  private long lastReportMillis;
+
+  /**
+   * @param intervalLogPath the CSV the per-second intervals are appended to, replaced if it exists
+   */
+  public LiveMetrics(String intervalLogPath) throws IOException {
+    for (int e = 0; e < ENDPOINTS.length; e++) {
+      for (int c = 0; c < STATUS_CLASSES.length; c++) {
+        this.counts[e][c] = new LongAdder();
+      }
+      this.latencies[e] = new Recorder(3);
+    }
+    this.intervalLog = new CSVPrinter(new FileWriter(intervalLogPath, false), CSVFormat.DEFAULT);
+    this.intervalLog.printRecord("elapsedSec", "endpoint", "requestsPerSec", "2xx", "3xx", "4xx", "5xx", "error",
+        "p50Us", "p99Us", "maxUs");
+    this.reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "live-metrics");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void start() {
+    this.startMillis = System.currentTimeMillis();
+    this.lastReportMillis = this.startMillis;
+    this.reporter.scheduleAtFixedRate(this::report, 1, 1, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Records one request.
+   *
+   * @param endpoint     the endpoint called
+   * @param latencyNanos the latency measured with System.nanoTime
+   * @param statusCode   the HTTP status code, or 0 if no response was received
+   */
+  public void record(Endpoint endpoint, long latencyNanos, int statusCode) {
+    int statusClass = statusCode >= 200 && statusCode < 600 ? statusCode / 100 - 2 : ERROR;
+    this.counts[endpoint.ordinal()][statusClass].increment();
+    this.latencies[endpoint.ordinal()].recordValue(Math.max(1L, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+  }
+
+  /**
+   * Stops the reporter after reporting the last partial interval, and closes the interval log.
+   */
+  @Override
+  public void close() throws IOException {
+    this.reporter.shutdown();
+    try {
+      this.reporter.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    report();
+    this.intervalLog.close();
+  }
+
+  private synchronized void report() {
+    long now = System.currentTimeMillis();
+    double intervalSec = Math.max(1, now - this.lastReportMillis) / 1000d;
+    long elapsedSec = (now - this.startMillis + 500) / 1000;
+    this.lastReportMillis = now;
+    StringBuilder line = new StringBuilder("[" + elapsedSec + "s]");
+    try {
+      for (int e = 0; e < ENDPOINTS.length; e++) {
+        long[] classCounts = new long[STATUS_CLASSES.length];
+        long total = 0;
+        for (int c = 0; c < STATUS_CLASSES.length; c++) {
+          classCounts[c] = this.counts[e][c].sumThenReset();
+          total += classCounts[c];
+        }
+        // Reuses the histogram handed back last interval instead of allocating a new one
+        this.intervalHistograms[e] = this.latencies[e].getIntervalHistogram(this.intervalHistograms[e]);
+        if (total == 0) {
+          continue;
+        }
+        Histogram h = this.intervalHistograms[e];
+        double rps = total / intervalSec;
+        line.append(String.format(" %s %.0f/s p50=%.1fms p99=%.1fms", ENDPOINTS[e], rps,
+            h.getValueAtPercentile(50) / 1000d, h.getValueAtPercentile(99) / 1000d));
+        if (total != classCounts[0]) {
+          line.append(String.format(" (4xx=%d 5xx=%d err=%d)", classCounts[2], classCounts[3], classCounts[ERROR]));
+        }
+        this.intervalLog.printRecord(elapsedSec, ENDPOINTS[e], String.format("%.1f", rps),
+            classCounts[0], classCounts[1], classCounts[2], classCounts[3], classCounts[ERROR],
+            h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getMaxValue());
+      }
+      this.intervalLog.flush();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    System.out.println(line);
+  }
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import model.Endpoint;
+import model.Phase;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Converts a {@link RecordSink} binary file to CSV, streaming one record at a time.
+ */
+public class RecordFileConverter {
+
+  private static final Endpoint[] ENDPOINTS = Endpoint.values();
+  private static final Phase[] PHASES = Phase.values();
+
+  private RecordFileConverter() {}
+
+  /**
+   * Writes one CSV row per record: startTime, requestType, latency (ms), responseCode, endpoint,
+   * phase and latency (us). The first four columns are those of the old in-memory record dump.
+   */
+  public static void toCsv(String binaryPath, String csvPath) throws IOException {
+    try (DataInputStream in = open(binaryPath);
+        CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(csvPath, false), CSVFormat.DEFAULT)) {
+      csvPrinter.printRecord("startTime", "requestType", "latency", "responseCode", "endpoint", "phase", "latencyUs");
+      while (true) {
+        long startTime;
+        try {
+          startTime = in.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        int latencyMicros = in.readInt();
+        short responseCode = in.readShort();
+        Endpoint endpoint = ENDPOINTS[in.readByte()];
+        Phase phase = PHASES[in.readByte()];
+        csvPrinter.printRecord(startTime, endpoint.getRequestType(), latencyMicros / 1000, responseCode,
+            endpoint, phase, latencyMicros);
+      }
+    }
+  }
+
+  /**
+   * Writes the number of requests sent in each second since runStartTime. Records sent before it
+   * (the warm-up) are skipped. Only one counter per second of run time is kept in memory.
+   */
+  public static void writeThroughputPerSec(String binaryPath, String csvPath, long runStartTime) throws IOException {
+    long[] counts = new long[64];
+    int seconds = 0;
+    try (DataInputStream in = open(binaryPath)) {
+      byte[] rest = new byte[RecordSink.RECORD_SIZE - Long.BYTES];
+      while (true) {
+        long startTime;
+        try {
+          startTime = in.readLong();
+        } catch (EOFException e) {
+          break;
+        }
+        in.readFully(rest);
+        if (startTime < runStartTime) {
+          continue;
+        }
+        int sec = (int) ((startTime - runStartTime) / 1000);
+        if (sec >= counts.length) {
+          counts = Arrays.copyOf(counts, Math.max(counts.length * 2, sec + 1));
+        }
+        counts[sec]++;
+        seconds = Math.max(seconds, sec + 1);
+      }
+    }
+    try (CSVPrinter csvPrinter = new CSVPrinter(new FileWriter(csvPath, false), CSVFormat.DEFAULT)) {
+      csvPrinter.printRecord("Time(S)", "Throughput");
+      for (int sec = 0; sec < seconds; sec++) {
+        csvPrinter.printRecord(sec + 1, counts[sec]);
+      }
+    }
+  }
+
+  private static DataInputStream open(String binaryPath) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(binaryPath), 64 * 1024));
+    if (in.readInt() != RecordSink.MAGIC) {
+      in.close();
+      throw new IOException(binaryPath + " is not a request record file");
+    }
+    return in;
+  }
+}
@@ -0,0 +1,132 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import model.Endpoint;
+import model.Phase;
+
+/**
+ * A single-producer, single-consumer ring of request records. The owning request thread writes,
+ * the {@link RecordSink} thread drains; neither takes a lock. Records live in preallocated
+ * primitive arrays, so writing allocates nothing. If the sink falls a whole ring behind, the
+ * writer yields until a slot frees up, for at most MAX_FULL_WAIT_NANOS. It drops the record
+ * instead if the sink is not draining (not started, closed or failed) or the wait runs out, and
+ * keeps dropping without waiting until the sink frees a slot, so a stalled sink never holds up
+ * the requests themselves.
+ */
+public class RecordRing {
+
+  private static final long MAX_FULL_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final RecordSink sink;
+  private final Phase phase;
+  private final int mask;
+  private final long[] startTimes;
+  private final int[] latencies;
+  private final short[] responseCodes;
+  private final byte[] endpoints;
+  // next slot the sink reads; written only by the sink
+  private final AtomicLong head = new AtomicLong();
+  // next slot the writer fills; written only by the writer
+  private final AtomicLong tail = new AtomicLong();
+  // the writer's last view of head, so it only reads the shared counter when the ring looks full
+  private long cachedHead;
+  // set once a wait for a slot has run out, so the writer stops waiting until the sink catches up
+  private boolean stalled;
+  // written only by the writer, read by the sink for its report
+  private final AtomicLong dropped = new AtomicLong();
+
+  RecordRing(RecordSink sink, Phase phase, int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two");
+    }
+    this.sink = sink;
+    this.phase = phase;
+    this.mask = capacity - 1;
+    this.startTimes = new long[capacity];
+    this.latencies = new int[capacity];
+    this.responseCodes = new short[capacity];
+    this.endpoints = new byte[capacity];
+  }
+
+  /**
+   * Records one request, or drops it if the ring stays full. Must only be called by the thread
+   * that owns this ring.
+   *
+   * @param startTime     the send time in epoch millis
+   * @param endpoint      the endpoint called
+   * @param latencyNanos  the latency measured with System.nanoTime
+   * @param responseCode  the HTTP status code
+   */
+  public void write(long startTime, Endpoint endpoint, long latencyNanos, int responseCode) {
+    long t = this.tail.get();
+    if (t - this.cachedHead > this.mask && !awaitSlot(t)) {
+      this.dropped.lazySet(this.dropped.get() + 1);
+      return;
+    }
+    int i = (int) t & this.mask;
+    this.startTimes[i] = startTime;
+    this.latencies[i] = (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1000);
+    this.responseCodes[i] = (short) responseCode;
+    this.endpoints[i] = (byte) endpoint.ordinal();
+    // Publishes the slot to the sink
+    this.tail.lazySet(t + 1);
+  }
+
+  /**
+   * Waits for the sink to free the slot at t while it is draining, for at most MAX_FULL_WAIT_NANOS.
+   *
+   * @return whether the slot is free
+   */
+  private boolean awaitSlot(long t) {
+    this.cachedHead = this.head.get();
+    if (t - this.cachedHead <= this.mask) {
+      this.stalled = false;
+      return true;
+    }
+    if (this.stalled) {
+      return false;
+    }
+    long deadline = System.nanoTime() + MAX_FULL_WAIT_NANOS;
+    while (this.sink.isDraining() && System.nanoTime() - deadline < 0) {
+      Thread.yield();
+      this.cachedHead = this.head.get();
+      if (t - this.cachedHead <= this.mask) {
+        return true;
+      }
+    }
+    this.stalled = true;
+    return false;
+  }
+
+  /**
+   * Returns the number of records dropped because the ring stayed full.
+   */
+  long getDroppedCount() {
+    return this.dropped.get();
+  }
+
+  /**
+   * Copies every published record into the sink's buffer, flushing the buffer whenever it fills.
+   *
+   * @return the number of records drained
+   */
+  int drainTo(RecordSink sink) throws IOException {
+    long h = this.head.get();
+    long t = this.tail.get();
+    for (long slot = h; slot < t; slot++) {
+      int i = (int) slot & this.mask;
+      ByteBuffer buffer = sink.reserve(RecordSink.RECORD_SIZE);
+      buffer.putLong(this.startTimes[i]);
+      buffer.putInt(this.latencies[i]);
+      buffer.putShort(this.responseCodes[i]);
+      buffer.put(this.endpoints[i]);
+      buffer.put((byte) this.phase.ordinal());
+    }
+    // Frees the slots for the writer
+    this.head.lazySet(t);
+    return (int) (t - h);
+  }
+}
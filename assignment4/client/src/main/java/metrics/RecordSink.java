@@ -0,0 +1,172 @@
+package metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import model.Phase;
+
+/**
+ * Streams request records to a binary file while the run is going, so memory use stays flat however
+ * long the run is and a crash loses at most the last flush interval. Every request thread gets its own
+ * {@link RecordRing}; one background thread drains all rings into a direct buffer and writes it to the
+ * file when it fills or every FLUSH_INTERVAL_MS.
+ *
+ * File format: the int MAGIC, then fixed {@value #RECORD_SIZE}-byte big-endian records of
+ * long startTime (epoch ms), int latency (us), short responseCode, byte endpoint ordinal,
+ * byte phase ordinal. {@link RecordFileConverter} turns it into CSV.
+ *
+ * If a write to the file fails the sink thread stops, the rings drop what no longer fits, and
+ * {@link #close()} rethrows the failure.
+ */
+public class RecordSink implements Closeable {
+
+  static final int MAGIC = 0x52524231; // "RRB1"
+  static final int RECORD_SIZE = 16;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long FLUSH_INTERVAL_MS = 100;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final Queue<RecordRing> rings = new ConcurrentLinkedQueue<>();
+  private final int ringCapacity;
+  private final Thread sinkThread;
+  private volatile boolean running = true;
+  // true from start() until the sink thread exits, for whatever reason
+  private volatile boolean draining;
+  private volatile IOException failure;
+  private long lastFlushMillis;
+  private long recordCount;
+
+  /**
+   * @param path         the binary file to write, replaced if it exists
+   * @param ringCapacity records each thread can have in flight to the sink, a power of two
+   */
+  public RecordSink(String path, int ringCapacity) throws IOException {
+    this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.ringCapacity = ringCapacity;
+    this.buffer.putInt(MAGIC);
+    this.sinkThread = new Thread(this::run, "record-sink");
+    this.sinkThread.setDaemon(true);
+  }
+
+  public void start() {
+    this.lastFlushMillis = System.currentTimeMillis();
+    this.draining = true;
+    this.sinkThread.start();
+  }
+
+  /**
+   * Creates the ring for one request thread.
+   */
+  public RecordRing newRing(Phase phase) {
+    RecordRing ring = new RecordRing(this, phase, this.ringCapacity);
+    this.rings.add(ring);
+    return ring;
+  }
+
+  /**
+   * Returns the number of records written. Only reliable after {@link #close()}.
+   */
+  public long getRecordCount() {
+    return this.recordCount;
+  }
+
+  /**
+   * Returns the number of records the rings dropped because the sink fell behind or stopped.
+   */
+  public long getDroppedCount() {
+    long dropped = 0;
+    for (RecordRing ring : this.rings) {
+      dropped += ring.getDroppedCount();
+    }
+    return dropped;
+  }
+
+  /**
+   * Returns whether the sink thread is running and draining the rings.
+   */
+  boolean isDraining() {
+    return this.draining;
+  }
+
+  /**
+   * Stops the sink thread after it has drained every ring, and closes the file. Call once the
+   * request threads have finished.
+   *
+   * @throws IOException if writing the file failed at any point, in which case it is incomplete
+   */
+  @Override
+  public void close() throws IOException {
+    this.running = false;
+    LockSupport.unpark(this.sinkThread);
+    try {
+      this.sinkThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    this.channel.close();
+    IOException failure = this.failure;
+    if (failure != null) {
+      throw new IOException("Failed to write request records (" + this.recordCount + " drained, "
+          + getDroppedCount() + " dropped), the record file is incomplete", failure);
+    }
+  }
+
+  private void run() {
+    try {
+      while (this.running) {
+        int drained = drainAll();
+        if (System.currentTimeMillis() - this.lastFlushMillis >= FLUSH_INTERVAL_MS) {
+          flush();
+        }
+        if (drained == 0) {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+      }
+      drainAll();
+      flush();
+    } catch (IOException e) {
+      this.failure = e;
+      e.printStackTrace();
+    } finally {
+      this.draining = false;
+    }
+  }
+
+  private int drainAll() throws IOException {
+    int drained = 0;
+    for (RecordRing ring : this.rings) {
+      drained += ring.drainTo(this);
+    }
+    this.recordCount += drained;
+    return drained;
+  }
+
+  /**
+   * Returns the buffer with room for at least the given number of bytes, writing it out first if needed.
+   */
+  ByteBuffer reserve(int bytes) throws IOException {
+    if (this.buffer.remaining() < bytes) {
+      flush();
+    }
+    return this.buffer;
+  }
+
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+    this.lastFlushMillis = System.currentTimeMillis();
+  }
+}
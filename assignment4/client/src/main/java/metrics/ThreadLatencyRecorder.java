@@ -0,0 +1,49 @@
+package metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import model.Endpoint;
+import model.Phase;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histograms owned by a single request thread, one per endpoint, with microsecond resolution.
+ * Only the owning thread records, so recording takes no locks and allocates nothing once an endpoint's
+ * histogram exists. The histograms are read by {@link LatencyReport} after the thread has finished.
+ */
+public class ThreadLatencyRecorder {
+
+  // 3 significant digits, auto-resizing so any latency fits
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final Phase phase;
+  private final Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+
+  ThreadLatencyRecorder(Phase phase) {
+    this.phase = phase;
+  }
+
+  /**
+   * Records one request.
+   *
+   * @param endpoint     the endpoint called
+   * @param latencyNanos the latency measured with System.nanoTime
+   */
+  public void record(Endpoint endpoint, long latencyNanos) {
+    Histogram histogram = histograms.get(endpoint);
+    if (histogram == null) {
+      histogram = new Histogram(SIGNIFICANT_DIGITS);
+      histograms.put(endpoint, histogram);
+    }
+    histogram.recordValue(Math.max(1L, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+  }
+
+  Phase getPhase() {
+    return phase;
+  }
+
+  Map<Endpoint, Histogram> getHistograms() {
+    return histograms;
+  }
+}
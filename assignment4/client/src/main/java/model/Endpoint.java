@@ -0,0 +1,18 @@
+package model;
+
+public enum Endpoint {
+  POST_ALBUM(RequestType.POST),
+  GET_ALBUM(RequestType.GET),
+  POST_REVIEW(RequestType.POST),
+  GET_REVIEW(RequestType.GET);
+
+  private final RequestType requestType;
+
+  Endpoint(RequestType requestType) {
+    this.requestType = requestType;
+  }
+
+  public RequestType getRequestType() {
+    return requestType;
+  }
+}
@@ -0,0 +1,6 @@
+package model;
+
+public enum Phase {
+  WARMUP,
+  LOAD
+}
@@ -0,0 +1,34 @@
+package utils;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Dispatcher;
+import com.squareup.okhttp.OkHttpClient;
+import io.swagger.client.ApiClient;
+
+/**
+ * Builds one ApiClient to be shared by every request of a run, instead of a new ApiClient (and
+ * OkHttpClient, dispatcher and connection pool) per thread.
+ */
+public class SharedApiClient {
+  private static final long KEEP_ALIVE_MS = 5 * 60 * 1000L;
+
+  private SharedApiClient() {}
+
+  /**
+   * @param basePath    the server base URL
+   * @param maxRequests the most requests run at once; the dispatcher queues the rest, and the
+   *                    connection pool keeps this many idle connections so they are reused
+   */
+  public static ApiClient create(String basePath, int maxRequests) {
+    ApiClient apiClient = new ApiClient();
+    apiClient.setBasePath(basePath);
+    OkHttpClient httpClient = apiClient.getHttpClient();
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxRequests);
+    // Every request goes to the same host (or load balancer)
+    dispatcher.setMaxRequestsPerHost(maxRequests);
+    httpClient.setDispatcher(dispatcher);
+    httpClient.setConnectionPool(new ConnectionPool(maxRequests, KEEP_ALIVE_MS));
+    return apiClient;
+  }
+}
@@ -0,0 +1,123 @@
+package benchmark;
+
+import consumer.DirectReviewWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the consumer's thread models on a burst of deliveries against a simulated database:
+ * a pool of DB_POOL_SIZE connections, each write holding one for WRITE_MICROS.
+ * <ul>
+ *   <li>PLATFORM: the platform-thread model, where each of the consumers is a platform thread that
+ *       writes its channel's deliveries one after another and waits for a free connection.</li>
+ *   <li>VIRTUAL: the VIRTUAL_THREAD mode, where every delivery runs as its own task on
+ *       {@link DirectReviewWriter#newPerTaskExecutor()} and a semaphore caps concurrent writes at
+ *       the pool size, as DirectReviewWriter does. The consumer count only sets how many channels
+ *       dispatch, not how many writers there are.</li>
+ * </ul>
+ * Both should level off at DB_POOL_SIZE / WRITE_MICROS; the platform model needs a thread per
+ * consumer to get there and keeps them whether or not the database can use them. Virtual threads
+ * need Java 21; on older JVMs the per-task executor falls back to a cached platform pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsumerModeBenchmark {
+    private static final int DB_POOL_SIZE = 10;
+    private static final long WRITE_MICROS = 500;
+    private static final int BURST = 5000;
+
+    public enum ThreadModel {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param({"10", "100", "1000"})
+    private int consumers;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ThreadModel model;
+
+    private ExecutorService executor;
+    private Semaphore dbConnections;
+    private Semaphore dbPermits;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dbConnections = new Semaphore(DB_POOL_SIZE);
+        dbPermits = new Semaphore(DB_POOL_SIZE);
+        executor = model == ThreadModel.PLATFORM
+                ? Executors.newFixedThreadPool(consumers)
+                : DirectReviewWriter.newPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void deliverBurst() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        if (model == ThreadModel.PLATFORM) {
+            // Each consumer thread drains its own channel's share of the burst in order
+            for (int c = 0; c < consumers; c++) {
+                int share = BURST / consumers + (c < BURST % consumers ? 1 : 0);
+                executor.execute(() -> {
+                    for (int i = 0; i < share; i++) {
+                        write();
+                        done.countDown();
+                    }
+                });
+            }
+        } else {
+            for (int i = 0; i < BURST; i++) {
+                executor.execute(() -> {
+                    dbPermits.acquireUninterruptibly();
+                    try {
+                        write();
+                    } finally {
+                        dbPermits.release();
+                    }
+                    done.countDown();
+                });
+            }
+        }
+        done.await();
+    }
+
+    /**
+     * Holds one simulated connection for the duration of a write, blocking while none is free.
+     */
+    private void write() {
+        dbConnections.acquireUninterruptibly();
+        try {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(WRITE_MICROS));
+        } finally {
+            dbConnections.release();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package benchmark;
+
+import service.DatabaseService;
+import util.UUIDUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Measures review insert throughput into MySQL with random and with time-ordered primary keys.
+ * Each run fills a fresh copy of the Review table (ReviewKeyBench) from several threads with
+ * batched inserts, the way the consumer writes, and drops it afterwards. The gap between the two
+ * grows once the table no longer fits in the buffer pool, so use enough rows to exceed it.
+ *
+ * Uses the consumer's DB_* and MAXIMUM_CONN_POOL_SIZE environment variables. Arguments: rows
+ * (default 1000000), threads (default 8), batch size (default 100), e.g.
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=benchmark.ReviewInsertThroughput -Djmh.args="5000000 16 100"
+ */
+public class ReviewInsertThroughput {
+    private static final String TABLE = "ReviewKeyBench";
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        run("UUID.randomUUID", UUID::randomUUID, rows, threads, batchSize);
+        run("UUIDUtil.timeOrderedUUID", UUIDUtil::timeOrderedUUID, rows, threads, batchSize);
+        System.exit(0);
+    }
+
+    private static void run(String name, Supplier<UUID> ids, int rows, int threads, int batchSize) throws Exception {
+        execute("DROP TABLE IF EXISTS " + TABLE);
+        execute("CREATE TABLE " + TABLE + " (reviewID BINARY(16) NOT NULL PRIMARY KEY, "
+                + "albumID INT NOT NULL, likeDislikeFlag BOOLEAN NOT NULL) ENGINE=InnoDB");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int rowsPerThread = rows / threads;
+        long start = System.nanoTime();
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                insert(ids, rowsPerThread, batchSize);
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        System.out.printf("%s: %d rows in %.1fs, %.0f rows/s%n", name, rowsPerThread * threads, seconds,
+                rowsPerThread * threads / seconds);
+        execute("DROP TABLE " + TABLE);
+    }
+
+    private static void insert(Supplier<UUID> ids, int rows, int batchSize) throws SQLException {
+        String insertSQL = "INSERT INTO " + TABLE + " (reviewID, albumID, likeDislikeFlag) VALUES (?, ?, ?)";
+        try (Connection conn = DatabaseService.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
+            conn.setAutoCommit(false);
+            for (int i = 1; i <= rows; i++) {
+                stmt.setBytes(1, UUIDUtil.uuidToBytes(ids.get()));
+                stmt.setInt(2, ThreadLocalRandom.current().nextInt(100000));
+                stmt.setBoolean(3, ThreadLocalRandom.current().nextBoolean());
+                stmt.addBatch();
+                if (i % batchSize == 0 || i == rows) {
+                    stmt.executeBatch();
+                    conn.commit();
+                }
+            }
+        }
+    }
+
+    private static void execute(String sql) throws SQLException {
+        try (Connection conn = DatabaseService.getConnection(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import util.UUIDUtil;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares UUIDUtil.timeOrderedUUID with UUID.randomUUID, single-threaded and with one thread per
+ * core, where every time-ordered ID goes through the same compare-and-set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UUIDBenchmark {
+
+    @Benchmark
+    public UUID timeOrdered() {
+        return UUIDUtil.timeOrderedUUID();
+    }
+
+    @Benchmark
+    public UUID random() {
+        return UUID.randomUUID();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UUID timeOrderedContended() {
+        return UUIDUtil.timeOrderedUUID();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public UUID randomContended() {
+        return UUID.randomUUID();
+    }
+}
@@ -0,0 +1,104 @@
+package consumer;
+
+/**
+ * Consumer settings read from environment variables.
+ */
+public class ConsumerConfig {
+
+    /**
+     * How deliveries are spread over threads.
+     * CHANNEL_PER_WORKER opens one channel (and one consumer) per worker; the client dispatches each
+     * channel on its own worker thread. SHARED_CHANNEL opens a single channel whose deliveries are
+     * handed to a pool of workers. Both feed the batch writer, whose flush threads write batches concurrently.
+     * VIRTUAL_THREAD opens one channel per consumer and runs every delivery on its own (virtual) thread,
+     * which writes it directly, with concurrent writes capped at the database connection pool size.
+     */
+    public enum Mode {
+        CHANNEL_PER_WORKER, SHARED_CHANNEL, VIRTUAL_THREAD
+    }
+
+    private final Mode mode;
+    private final int numConsumers;
+    private final int prefetchCount;
+    private final int batchSize;
+    private final int flushThreads;
+    private final int batchLingerMillis;
+    private final int recentReviewIdCapacity;
+    private final int maxConcurrentWrites;
+
+    public ConsumerConfig(Mode mode, int numConsumers, int prefetchCount, int batchSize, int flushThreads,
+                          int batchLingerMillis, int recentReviewIdCapacity, int maxConcurrentWrites) {
+        this.mode = mode;
+        this.numConsumers = numConsumers;
+        this.prefetchCount = prefetchCount;
+        this.batchSize = batchSize;
+        this.flushThreads = flushThreads;
+        this.batchLingerMillis = batchLingerMillis;
+        this.recentReviewIdCapacity = recentReviewIdCapacity;
+        this.maxConcurrentWrites = maxConcurrentWrites;
+    }
+
+    /**
+     * Reads NUM_OF_CONSUMERS, CONSUMER_MODE, PREFETCH_COUNT, REVIEW_BATCH_SIZE, REVIEW_FLUSH_THREADS,
+     * REVIEW_BATCH_LINGER_MS and RECENT_REVIEW_ID_CAPACITY. The concurrent write limit of the virtual thread mode is
+     * MAXIMUM_CONN_POOL_SIZE, the same setting that sizes the Hikari pool, and the number of batch flush threads
+     * defaults to it so that every connection can be writing a batch.
+     * The prefetch defaults to one batch per channel, since deliveries stay unacked until their batch commits.
+     */
+    public static ConsumerConfig fromEnv() {
+        int numConsumers = Integer.parseInt(System.getenv("NUM_OF_CONSUMERS"));
+        String modeName = System.getenv("CONSUMER_MODE");
+        Mode mode = modeName == null ? Mode.CHANNEL_PER_WORKER : Mode.valueOf(modeName.toUpperCase().replace('-', '_'));
+        int batchSize = getEnvInt("REVIEW_BATCH_SIZE", 100);
+        int batchLingerMillis = getEnvInt("REVIEW_BATCH_LINGER_MS", 20);
+        int prefetchCount = getEnvInt("PREFETCH_COUNT", batchSize);
+        int recentReviewIdCapacity = getEnvInt("RECENT_REVIEW_ID_CAPACITY", 100000);
+        int maxConcurrentWrites = Integer.parseInt(System.getenv("MAXIMUM_CONN_POOL_SIZE"));
+        int flushThreads = getEnvInt("REVIEW_FLUSH_THREADS", maxConcurrentWrites);
+        return new ConsumerConfig(mode, numConsumers, prefetchCount, batchSize, flushThreads, batchLingerMillis,
+                recentReviewIdCapacity, maxConcurrentWrites);
+    }
+
+    static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getNumConsumers() {
+        return numConsumers;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getFlushThreads() {
+        return flushThreads;
+    }
+
+    public int getBatchLingerMillis() {
+        return batchLingerMillis;
+    }
+
+    public int getRecentReviewIdCapacity() {
+        return recentReviewIdCapacity;
+    }
+
+    public int getMaxConcurrentWrites() {
+        return maxConcurrentWrites;
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode + ", consumers=" + numConsumers + ", prefetch=" + prefetchCount
+                + ", batchSize=" + batchSize + ", flushThreads=" + flushThreads + ", lingerMs=" + batchLingerMillis;
+    }
+}
@@ -0,0 +1,87 @@
+package consumer;
+
+import com.rabbitmq.client.Channel;
+import model.Review;
+import service.ReviewService;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes each review on the calling thread in its own transaction and acks it individually.
+ * Meant to be driven from one thread per delivery (virtual threads where available), with a
+ * semaphore capping concurrent writes at the database connection pool size. Any number of
+ * deliveries can then be in flight while the database only ever sees as many writers as it has
+ * connections, so callers wait on the semaphore rather than on Hikari's connection timeout.
+ */
+public class DirectReviewWriter implements ReviewSink {
+    private static final Logger logger = Logger.getLogger(DirectReviewWriter.class.getName());
+
+    private final ReviewService reviewService;
+    private final Semaphore dbPermits;
+
+    public DirectReviewWriter(int maxConcurrentWrites) {
+        this.reviewService = new ReviewService();
+        this.dbPermits = new Semaphore(maxConcurrentWrites);
+    }
+
+    /**
+     * Creates an executor that runs every task on a new virtual thread when the JVM supports them (Java 21+),
+     * or on a cached pool of platform threads otherwise. Looked up reflectively so the module still targets Java 11.
+     */
+    public static ExecutorService newPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warning("Virtual threads are not available on this JVM, using platform threads per delivery");
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    @Override
+    public void submit(Review review, Channel channel, long deliveryTag) {
+        boolean committed;
+        dbPermits.acquireUninterruptibly();
+        try {
+            reviewService.createReviews(Collections.singletonList(review));
+            committed = true;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Failed to insert review, requeueing", e);
+            committed = false;
+        } finally {
+            dbPermits.release();
+        }
+        try {
+            if (committed) {
+                channel.basicAck(deliveryTag, false);
+            } else {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        } catch (IOException e) {
+            // The channel is gone; the broker will redeliver its unacked messages
+            logger.log(Level.WARNING, "Failed to settle delivery " + deliveryTag, e);
+        }
+    }
+
+    @Override
+    public void reject(Channel channel, long deliveryTag) {
+        try {
+            channel.basicNack(deliveryTag, false, false);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to reject delivery " + deliveryTag, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Writes run on the caller's thread, so there is nothing buffered here
+    }
+}
@@ -0,0 +1,32 @@
+package consumer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A bounded set of the review IDs this consumer committed most recently.
+ * Redeliveries usually arrive shortly after the original, so most replays are recognised here
+ * without a database round trip; older ones are still caught by the primary key in MySQL.
+ * Shared by the batch writer's flush threads, so every access takes the set's lock.
+ */
+public class RecentReviewIds {
+    private final Map<UUID, Boolean> ids;
+
+    public RecentReviewIds(int capacity) {
+        this.ids = new LinkedHashMap<UUID, Boolean>(capacity * 4 / 3 + 1) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public synchronized boolean contains(UUID reviewId) {
+        return ids.containsKey(reviewId);
+    }
+
+    public synchronized void add(UUID reviewId) {
+        ids.put(reviewId, Boolean.TRUE);
+    }
+}
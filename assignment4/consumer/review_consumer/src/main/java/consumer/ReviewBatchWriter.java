@@ -0,0 +1,259 @@
+package consumer;
+
+import com.rabbitmq.client.Channel;
+import model.Review;
+import service.ReviewService;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects review deliveries from all consumer channels and writes them to MySQL in batches.
+ * A pool of flush threads takes batches off one shared queue, each writing its batch in its own
+ * transaction on its own connection, so writes scale with the number of flush threads up to the
+ * connection pool size. A batch is flushed when it reaches the maximum size or when the oldest delivery in it has
+ * waited for the linger time. Deliveries are acknowledged only after their batch commits and
+ * are requeued if it fails. Reviews are deduplicated by the review ID carried in the message,
+ * first against the IDs this writer committed recently and then against the Review primary key,
+ * so redelivered messages are acked without being stored or counted twice.
+ *
+ * Deliveries may reach the writer out of tag order (for example when a worker pool parses them),
+ * so settlement is tracked per channel: a contiguous run of tags is settled with one multiple-ack,
+ * and only tags beyond a gap are settled one by one. Every flush thread settles through the same
+ * per-channel tracker under its lock, so a multiple-ack only ever covers tags that are already
+ * settled, whichever thread wrote them.
+ */
+public class ReviewBatchWriter implements ReviewSink {
+    private static final Logger logger = Logger.getLogger(ReviewBatchWriter.class.getName());
+
+    private final BlockingQueue<PendingReview> queue = new LinkedBlockingQueue<>();
+    // Each tracker is only used while holding its lock
+    private final Map<Channel, ChannelAcks> channelAcks = new ConcurrentHashMap<>();
+    private final ReviewService reviewService;
+    private final RecentReviewIds recentReviewIds;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final List<Thread> flushThreads = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param flushThreadCount Number of batches written concurrently, each on its own connection.
+     * @param maxBatchSize     Most reviews in one batch.
+     * @param lingerMillis     Longest the oldest delivery in a batch waits for the batch to fill.
+     * @param recentIdCapacity Number of recently committed review IDs remembered for deduplication.
+     */
+    public ReviewBatchWriter(int flushThreadCount, int maxBatchSize, long lingerMillis, int recentIdCapacity) {
+        this.reviewService = new ReviewService();
+        this.recentReviewIds = new RecentReviewIds(recentIdCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        for (int i = 0; i < flushThreadCount; i++) {
+            this.flushThreads.add(new Thread(this::run, "review-batch-writer-" + i));
+        }
+    }
+
+    public void start() {
+        for (Thread flushThread : flushThreads) {
+            flushThread.start();
+        }
+    }
+
+    /**
+     * Queues a review for the next batch.
+     *
+     * @param review      The review to insert.
+     * @param channel     The channel the delivery arrived on.
+     * @param deliveryTag The delivery tag to acknowledge once the review is committed.
+     */
+    @Override
+    public void submit(Review review, Channel channel, long deliveryTag) {
+        queue.add(new PendingReview(review, channel, deliveryTag));
+    }
+
+    /**
+     * Queues a delivery that can never be processed, to be rejected without requeue.
+     * Rejects go through the writer so that its per-channel settlement tracking stays complete.
+     */
+    @Override
+    public void reject(Channel channel, long deliveryTag) {
+        queue.add(new PendingReview(null, channel, deliveryTag));
+    }
+
+    /**
+     * Stops accepting new batches, flushes whatever is queued and waits for the flush threads to exit.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread flushThread : flushThreads) {
+            flushThread.interrupt();
+        }
+        for (Thread flushThread : flushThreads) {
+            try {
+                flushThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        List<PendingReview> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingReview first = queue.take();
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingReview next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // close() was called; fall through and flush what we have
+            }
+            flush(batch);
+        }
+        // Drain anything that arrived before the consumers were cancelled
+        while (!queue.isEmpty()) {
+            queue.drainTo(batch, maxBatchSize);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<PendingReview> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Skip replays of reviews committed recently and duplicates within this batch; they are still acked
+        List<Review> reviews = new ArrayList<>(batch.size());
+        Set<UUID> batchIds = new HashSet<>();
+        for (PendingReview pending : batch) {
+            if (pending.review != null && !recentReviewIds.contains(pending.review.getReviewID())
+                    && batchIds.add(pending.review.getReviewID())) {
+                reviews.add(pending.review);
+            }
+        }
+        boolean committed = true;
+        if (!reviews.isEmpty()) {
+            try {
+                reviewService.createReviews(reviews);
+                for (Review review : reviews) {
+                    recentReviewIds.add(review.getReviewID());
+                }
+            } catch (SQLException e) {
+                logger.log(Level.SEVERE, "Failed to insert review batch of " + reviews.size() + ", requeueing", e);
+                committed = false;
+            }
+        }
+        Map<Channel, List<Long>> acks = new LinkedHashMap<>();
+        Map<Channel, List<Long>> requeues = new LinkedHashMap<>();
+        Map<Channel, List<Long>> drops = new LinkedHashMap<>();
+        for (PendingReview pending : batch) {
+            Map<Channel, List<Long>> target = pending.review == null ? drops : committed ? acks : requeues;
+            target.computeIfAbsent(pending.channel, c -> new ArrayList<>()).add(pending.deliveryTag);
+        }
+        settle(acks, Outcome.ACK);
+        settle(requeues, Outcome.REQUEUE);
+        settle(drops, Outcome.DROP);
+        batch.clear();
+    }
+
+    private void settle(Map<Channel, List<Long>> tagsPerChannel, Outcome outcome) {
+        for (Map.Entry<Channel, List<Long>> entry : tagsPerChannel.entrySet()) {
+            Channel channel = entry.getKey();
+            ChannelAcks acks = channelAcks.computeIfAbsent(channel, c -> new ChannelAcks());
+            try {
+                synchronized (acks) {
+                    acks.settle(channel, entry.getValue(), outcome);
+                }
+            } catch (IOException e) {
+                // The channel is gone; the broker will redeliver its unacked messages
+                logger.log(Level.WARNING, "Failed to settle " + entry.getValue().size() + " deliveries", e);
+                channelAcks.remove(channel, acks);
+            }
+        }
+    }
+
+    private enum Outcome {
+        ACK, REQUEUE, DROP
+    }
+
+    /**
+     * Tracks which delivery tags of one channel have been settled. Every tag up to settledUpTo is
+     * settled, and settledAbove holds the tags settled individually beyond the first gap.
+     */
+    private static class ChannelAcks {
+        private long settledUpTo = 0;
+        private final TreeSet<Long> settledAbove = new TreeSet<>();
+
+        void settle(Channel channel, List<Long> tags, Outcome outcome) throws IOException {
+            Collections.sort(tags);
+            int i = 0;
+            long multipleTag = -1;
+            while (true) {
+                long next = settledUpTo + 1;
+                if (i < tags.size() && tags.get(i) == next) {
+                    multipleTag = next;
+                    settledUpTo = next;
+                    i++;
+                } else if (settledAbove.remove(next)) {
+                    settledUpTo = next;
+                } else {
+                    break;
+                }
+            }
+            // Every tag up to multipleTag is either in this group or already settled, so one frame covers them all
+            if (multipleTag > 0) {
+                send(channel, multipleTag, true, outcome);
+            }
+            for (; i < tags.size(); i++) {
+                send(channel, tags.get(i), false, outcome);
+                settledAbove.add(tags.get(i));
+            }
+        }
+
+        private static void send(Channel channel, long tag, boolean multiple, Outcome outcome) throws IOException {
+            if (outcome == Outcome.ACK) {
+                channel.basicAck(tag, multiple);
+            } else {
+                channel.basicNack(tag, multiple, outcome == Outcome.REQUEUE);
+            }
+        }
+    }
+
+    private static class PendingReview {
+        private final Review review;
+        private final Channel channel;
+        private final long deliveryTag;
+
+        PendingReview(Review review, Channel channel, long deliveryTag) {
+            this.review = review;
+            this.channel = channel;
+            this.deliveryTag = deliveryTag;
+        }
+    }
+}
@@ -4,82 +4,161 @@ import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
 import model.Review;
 import rmqpool.RMQChannelFactory;
 import rmqpool.RMQChannelPool;
-import service.ReviewService;
+import util.ReviewMessageCodec;
+import util.UUIDUtil;
 
 import java.io.IOException;
-import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Consumes reviews from the review queue with manual acknowledgements.
+ * Deliveries are handed to a {@link ReviewSink} and acknowledged only after they are committed,
+ * giving at-least-once delivery. The thread model and prefetch are configured through {@link ConsumerConfig}.
+ */
 public class ReviewConsumer {
     private final static String QUEUE_NAME = "reviewQueue";
+    // Longest prefix of a malformed message body written to the log
+    private static final int MAX_LOGGED_BODY_BYTES = 64;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     public static void main(String[] argv) throws Exception {
+        ConsumerConfig config = ConsumerConfig.fromEnv();
+        System.out.println(" [*] Starting consumer with " + config);
+        int numConsumers = config.getNumConsumers();
+        ConsumerConfig.Mode mode = config.getMode();
+        boolean sharedChannel = mode == ConsumerConfig.Mode.SHARED_CHANNEL;
+
+        // In channel-per-worker mode the client dispatches each channel on this pool, so every channel gets its own worker.
+        // In shared-channel mode the single channel's dispatch thread hands deliveries to it.
+        // In virtual-thread mode every delivery runs as its own task.
+        ExecutorService workerPool = mode == ConsumerConfig.Mode.VIRTUAL_THREAD
+                ? DirectReviewWriter.newPerTaskExecutor()
+                : Executors.newFixedThreadPool(numConsumers);
         ConnectionFactory factory = new ConnectionFactory();
         factory.setHost(System.getenv("RABBITMQ_ADDRESS"));
+        if (mode == ConsumerConfig.Mode.CHANNEL_PER_WORKER) {
+            factory.setSharedExecutor(workerPool);
+        }
         final Connection connection = factory.newConnection();
 
+        int numChannels = sharedChannel ? 1 : numConsumers;
         RMQChannelFactory channelFactory = new RMQChannelFactory(connection);
-        int poolSize = 30;
-        RMQChannelPool channelPool = new RMQChannelPool(poolSize, channelFactory);
+        // Every consumer channel stays checked out for the life of the process, so open them all up front
+        RMQChannelPool channelPool = new RMQChannelPool(numChannels,
+                ConsumerConfig.getEnvInt("RMQ_CHANNEL_BORROW_TIMEOUT_MS", 5000), channelFactory);
 
-        int numConsumers = Integer.parseInt(System.getenv("NUM_OF_CONSUMERS"));
-        ExecutorService executorService = Executors.newFixedThreadPool(numConsumers);
+        ReviewSink sink;
+        if (mode == ConsumerConfig.Mode.VIRTUAL_THREAD) {
+            sink = new DirectReviewWriter(config.getMaxConcurrentWrites());
+        } else {
+            ReviewBatchWriter batchWriter = new ReviewBatchWriter(config.getFlushThreads(), config.getBatchSize(),
+                    config.getBatchLingerMillis(), config.getRecentReviewIdCapacity());
+            batchWriter.start();
+            sink = batchWriter;
+        }
 
-        for (int i = 0; i < numConsumers; i++) {
-            executorService.submit(() -> {
-                Channel channel = null;
-                try {
-                    channel = channelPool.borrowObject();
-                    channel.queueDeclare(QUEUE_NAME, false, false, false, null);
-                    channel.basicQos(1);
-                    System.out.println(" [*] Thread waiting for messages. To exit press CTRL+C");
+        Map<Channel, String> consumerTags = new LinkedHashMap<>();
+        for (int i = 0; i < numChannels; i++) {
+            Channel channel = channelPool.borrowObject();
+            channel.queueDeclare(QUEUE_NAME, false, false, false, null);
+            channel.basicQos(config.getPrefetchCount());
 
-                    DeliverCallback deliverCallback = (consumerTag, delivery) -> {
-                        String message = new String(delivery.getBody(), "UTF-8");
-                        processMessage(message);
-                        System.out.println("Callback thread ID = " + Thread.currentThread().getId() + " Received '" + message + "'");
-                    };
-                    channel.basicConsume(QUEUE_NAME, true, deliverCallback, consumerTag -> { });
-                } catch (IOException ex) {
-                    Logger.getLogger(ReviewConsumer.class.getName()).log(Level.SEVERE, null, ex);
-                } finally {
-                    if (channel != null) {
-                        try {
-                            channelPool.returnObject(channel);
-                        } catch (Exception ex) {
-                            Logger.getLogger(ReviewConsumer.class.getName()).log(Level.SEVERE, "Failed to return channel to pool", ex);
-                        }
-                    }
-                }
-            });
+            DeliverCallback deliverCallback;
+            if (mode == ConsumerConfig.Mode.CHANNEL_PER_WORKER) {
+                deliverCallback = (consumerTag, delivery) -> handleDelivery(sink, channel, delivery);
+            } else {
+                deliverCallback = (consumerTag, delivery) ->
+                        workerPool.execute(() -> handleDelivery(sink, channel, delivery));
+            }
+            consumerTags.put(channel, channel.basicConsume(QUEUE_NAME, false, deliverCallback, consumerTag -> { }));
         }
-
+        System.out.println(" [*] " + numChannels + " channel(s) waiting for messages. To exit press CTRL+C");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            executorService.shutdown();
+            // Stop new deliveries, then flush and ack what is already in flight before closing the channels
+            for (Map.Entry<Channel, String> entry : consumerTags.entrySet()) {
+                try {
+                    entry.getKey().basicCancel(entry.getValue());
+                } catch (IOException ex) {
+                    Logger.getLogger(ReviewConsumer.class.getName()).log(Level.WARNING, "Failed to cancel consumer", ex);
+                }
+            }
+            workerPool.shutdown();
+            try {
+                workerPool.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            sink.close();
+            for (Channel channel : consumerTags.keySet()) {
+                try {
+                    channelPool.returnObject(channel);
+                } catch (Exception ex) {
+                    Logger.getLogger(ReviewConsumer.class.getName()).log(Level.SEVERE, "Failed to return channel to pool", ex);
+                }
+            }
+            System.out.println("RabbitMQ channel pool: " + channelPool);
             channelPool.close();
+            try {
+                connection.close();
+            } catch (IOException ex) {
+                Logger.getLogger(ReviewConsumer.class.getName()).log(Level.WARNING, "Failed to close connection", ex);
+            }
         }));
     }
 
-    private static void processMessage(String message) {
-        ReviewService reviewService = new ReviewService();
-        String[] parts = message.split(",");
-        UUID reviewID = UUID.randomUUID();
-        Review review = new Review(reviewID, Integer.parseInt(parts[1]), "like".equals(parts[0]));
+    private static void handleDelivery(ReviewSink sink, Channel channel, Delivery delivery) {
+        long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+        Review review;
         try {
-            reviewService.createReview(review);
-            System.out.println("Inserted review: " + review);
-        } catch (SQLException  e) {
-            e.printStackTrace();
-            // Handle exception - maybe log it or send a notification
+            review = decodeReview(delivery.getBody());
+        } catch (RuntimeException e) {
+            // A malformed message can never succeed, so drop it instead of requeueing it forever
+            byte[] body = delivery.getBody();
+            Logger.getLogger(ReviewConsumer.class.getName()).log(Level.WARNING,
+                    "Dropping malformed message of " + body.length + " bytes: " + toHex(body), e);
+            sink.reject(channel, deliveryTag);
+            return;
+        }
+        sink.submit(review, channel, deliveryTag);
+    }
+
+    /**
+     * Decodes either a binary review envelope or a legacy "like,albumId" message.
+     * Legacy messages carry no review ID, so one is generated here. The envelope's timestamp is not
+     * decoded, since no column stores it.
+     */
+    private static Review decodeReview(byte[] body) {
+        UUID reviewID = ReviewMessageCodec.hasReviewId(body)
+                ? new UUID(ReviewMessageCodec.getReviewIdMostSigBits(body), ReviewMessageCodec.getReviewIdLeastSigBits(body))
+                : UUIDUtil.timeOrderedUUID();
+        return new Review(reviewID, ReviewMessageCodec.getAlbumId(body), ReviewMessageCodec.isLike(body));
+    }
+
+    /**
+     * Formats the start of a message body as hex, since binary envelopes are not text.
+     */
+    private static String toHex(byte[] body) {
+        int length = Math.min(body.length, MAX_LOGGED_BODY_BYTES);
+        StringBuilder hex = new StringBuilder(length * 2 + 3);
+        for (int i = 0; i < length; i++) {
+            hex.append(HEX_DIGITS[(body[i] >> 4) & 0xf]).append(HEX_DIGITS[body[i] & 0xf]);
+        }
+        if (body.length > length) {
+            hex.append("...");
         }
+        return hex.toString();
     }
 
 }
@@ -0,0 +1,29 @@
+package consumer;
+
+import com.rabbitmq.client.Channel;
+import model.Review;
+
+/**
+ * Receives decoded review deliveries and is responsible for storing and settling them.
+ */
+public interface ReviewSink {
+
+    /**
+     * Stores a review and acknowledges its delivery once it is committed.
+     *
+     * @param review      The decoded review.
+     * @param channel     The channel the delivery arrived on.
+     * @param deliveryTag The delivery tag to settle.
+     */
+    void submit(Review review, Channel channel, long deliveryTag);
+
+    /**
+     * Rejects a delivery that can never be processed, without requeue.
+     */
+    void reject(Channel channel, long deliveryTag);
+
+    /**
+     * Finishes the work already submitted and releases resources.
+     */
+    void close();
+}
@@ -0,0 +1,42 @@
+package dao;
+
+import model.Review;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the pre-aggregated AlbumStats(albumID PRIMARY KEY, likes, dislikes) counter table,
+ * so reading an album's counts never has to scan its Review rows.
+ */
+public class AlbumStatsDao {
+
+    /**
+     * Adds the likes and dislikes of the given reviews to their albums' counters with one upsert per album.
+     * Albums are updated in ascending ID order so concurrent batches always lock rows in the same order.
+     */
+    public void incrementStats(Connection conn, List<Review> reviews) throws SQLException {
+        // albumID -> {likes, dislikes}
+        Map<Integer, int[]> deltas = new TreeMap<>();
+        for (Review review : reviews) {
+            int[] delta = deltas.computeIfAbsent(review.getAlbumID(), id -> new int[2]);
+            delta[review.isLikeDislikeFlag() ? 0 : 1]++;
+        }
+
+        String upsertSQL = "INSERT INTO AlbumStats (albumID, likes, dislikes) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE likes = likes + VALUES(likes), dislikes = dislikes + VALUES(dislikes)";
+        try (PreparedStatement stmt = conn.prepareStatement(upsertSQL)) {
+            for (Map.Entry<Integer, int[]> entry : deltas.entrySet()) {
+                stmt.setInt(1, entry.getKey());
+                stmt.setInt(2, entry.getValue()[0]);
+                stmt.setInt(3, entry.getValue()[1]);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+}
@@ -6,6 +6,10 @@ import util.UUIDUtil;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class ReviewDao {
 
@@ -22,6 +26,40 @@ public class ReviewDao {
         }
     }
 
-
+    /**
+     * Inserts the reviews whose ID is not stored yet, with a single JDBC batch, and returns them.
+     * The caller owns the transaction.
+     * Each row is an INSERT IGNORE ... SELECT, which the driver never rewrites into one multi-row INSERT.
+     * With rewriteBatchedStatements enabled on the connection it sends the batch as one multi-statement
+     * round trip instead, and reports an update count per row: 1 for a new review, 0 for an ID that is
+     * already stored. A concurrent transaction inserting the same ID waits on that row's lock and then
+     * finds the duplicate, so every review is reported as new exactly once, without locking reads or
+     * gap locks. Rows are inserted in ID order so two batches never wait on each other's rows.
+     */
+    public List<Review> insertNewReviews(Connection conn, List<Review> reviews) throws SQLException {
+        List<Review> sorted = new ArrayList<>(reviews);
+        sorted.sort(Comparator.comparing(Review::getReviewID));
+        String insertSQL = "INSERT IGNORE INTO Review (reviewID, albumID, likeDislikeFlag) SELECT ?, ?, ?";
+        int[] updateCounts;
+        try (PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
+            for (Review review : sorted) {
+                stmt.setBytes(1, UUIDUtil.uuidToBytes(review.getReviewID()));
+                stmt.setInt(2, review.getAlbumID());
+                stmt.setBoolean(3, review.isLikeDislikeFlag());
+                stmt.addBatch();
+            }
+            updateCounts = stmt.executeBatch();
+        }
+        List<Review> inserted = new ArrayList<>(sorted.size());
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+                throw new SQLException("The driver did not report which reviews were inserted");
+            }
+            if (updateCounts[i] > 0) {
+                inserted.add(sorted.get(i));
+            }
+        }
+        return inserted;
+    }
 }
 
@@ -7,71 +7,114 @@ package rmqpool;
  */
 
 import com.rabbitmq.client.Channel;
-import org.apache.commons.pool2.ObjectPool;
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
 
 /**
- * A simple RabbitMQ channel pool based on a BlockingQueue implementation
- *
+ * A fixed-size RabbitMQ channel pool backed by a commons-pool2 {@link GenericObjectPool}.
+ * All channels are opened up front. Borrowing waits at most the configured timeout instead of
+ * parking forever, and channels are validated on borrow and on return, so closed channels are
+ * destroyed and replaced.
  */
 public class RMQChannelPool {
+    private final GenericObjectPool<Channel> pool;
+    private final RMQChannelFactory factory;
+    private final long borrowTimeoutMillis;
+    private final AtomicLong borrowTimeouts = new AtomicLong();
 
-    // used to store and distribute channels
-    private final BlockingQueue<Channel> pool;
-    // fixed size pool
-    private int capacity;
-    // used to ceate channels
-    private RMQChannelFactory factory;
-
-
-    public RMQChannelPool(int maxSize, RMQChannelFactory factory) {
-        this.capacity = maxSize;
-        pool = new LinkedBlockingQueue<>(capacity);
+    /**
+     * @param size                The number of channels.
+     * @param borrowTimeoutMillis How long borrowObject waits for a channel before failing.
+     * @param factory             Creates, validates and destroys channels.
+     */
+    public RMQChannelPool(int size, long borrowTimeoutMillis, RMQChannelFactory factory) {
+        GenericObjectPoolConfig<Channel> config = new GenericObjectPoolConfig<>();
+        config.setMinIdle(size);
+        config.setMaxIdle(size);
+        config.setMaxTotal(size);
+        config.setBlockWhenExhausted(true);
+        config.setMaxWaitMillis(borrowTimeoutMillis);
+        config.setTestOnCreate(true);
+        config.setTestOnBorrow(true);
+        config.setTestOnReturn(true);
+        config.setJmxEnabled(false);
+        this.pool = new GenericObjectPool<>(factory, config);
         this.factory = factory;
-        for (int i = 0; i < capacity; i++) {
-            Channel chan;
-            try {
-                chan = factory.create();
-                pool.put(chan);
-            } catch (IOException | InterruptedException ex) {
-                Logger.getLogger(RMQChannelPool.class.getName()).log(Level.SEVERE, null, ex);
-            }
-
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        try {
+            pool.preparePool();
+        } catch (Exception ex) {
+            Logger.getLogger(RMQChannelPool.class.getName()).log(Level.SEVERE, "Failed to pre-create channels", ex);
         }
     }
 
+    /**
+     * Borrows an open channel, waiting at most the configured borrow timeout.
+     *
+     * @throws IOException if no channel became available in time or a new one could not be opened.
+     */
     public Channel borrowObject() throws IOException {
-
         try {
-            return pool.take();
-        } catch (InterruptedException e) {
-            throw new RuntimeException("Error: no channels available" + e.toString());
+            return pool.borrowObject();
+        } catch (NoSuchElementException e) {
+            borrowTimeouts.incrementAndGet();
+            throw new IOException("No channel available within " + borrowTimeoutMillis + "ms", e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to borrow channel", e);
         }
     }
 
     public void returnObject(Channel channel) throws Exception {
-        if (channel != null) {
-            pool.add(channel);
+        if (channel == null) {
+            return;
         }
+        if (!channel.isOpen()) {
+            invalidate(channel);
+            return;
+        }
+        pool.returnObject(channel);
     }
 
-    public void close() {
-        for (int i = 0; i < capacity; i++) {
-            try {
-                Channel channel = pool.take();
-                if (channel != null && channel.isOpen()) {
-                    channel.close();
-                }
-            } catch (Exception e) {
-                Logger.getLogger(RMQChannelPool.class.getName()).log(Level.SEVERE, "Failed to close channel", e);
-            }
+    /**
+     * Checks a checked-out channel the same way the pool validates idle ones, for holders that keep a
+     * channel for a long time instead of returning it between uses.
+     */
+    public boolean isValid(Channel channel) {
+        return factory.validateObject(new DefaultPooledObject<>(channel));
+    }
+
+    /**
+     * Destroys a channel that is known to be broken and lets the pool replace it.
+     */
+    public void invalidate(Channel channel) {
+        try {
+            pool.invalidateObject(channel);
+        } catch (Exception ex) {
+            Logger.getLogger(RMQChannelPool.class.getName()).log(Level.WARNING, "Failed to invalidate channel", ex);
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public String toString() {
+        return "active=" + pool.getNumActive() + ", idle=" + pool.getNumIdle()
+                + ", maxWaitMs=" + pool.getMaxBorrowWaitTimeMillis() + ", timeouts=" + borrowTimeouts.get()
+                + ", destroyed=" + pool.getDestroyedCount();
+    }
+
+    /**
+     * Closes the idle channels. Checked-out channels close with their connection.
+     */
+    public void close() {
+        pool.close();
+    }
+
+}
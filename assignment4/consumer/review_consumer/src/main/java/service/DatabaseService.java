@@ -11,7 +11,8 @@ public class DatabaseService {
     static {
         HikariConfig config = new HikariConfig();
         config.setMaximumPoolSize(Integer.parseInt(System.getenv("MAXIMUM_CONN_POOL_SIZE")));
-        config.setJdbcUrl("jdbc:mysql://" + System.getenv("DB_HOST") + ":" + System.getenv("DB_PORT") + "/" + System.getenv("DB_NAME"));
+        config.setJdbcUrl("jdbc:mysql://" + System.getenv("DB_HOST") + ":" + System.getenv("DB_PORT") + "/" + System.getenv("DB_NAME")
+                + "?rewriteBatchedStatements=true");
         config.setUsername(System.getenv("DB_USERNAME"));
         config.setPassword(System.getenv("DB_PASSWORD"));
         config.setDriverClassName("com.mysql.cj.jdbc.Driver");
@@ -1,24 +1,73 @@
 package service;
 
+import dao.AlbumStatsDao;
 import dao.ReviewDao;
 import model.Review;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
 
 public class ReviewService {
+    // Rows are locked in a fixed order, so deadlocks should not happen; retry the rare one InnoDB reports anyway
+    private static final int MAX_DEADLOCK_RETRIES = 3;
+    private static final String SERIALIZATION_FAILURE = "40001";
+
     private ReviewDao reviewDao;
+    private AlbumStatsDao albumStatsDao;
 
     public ReviewService() {
         this.reviewDao = new ReviewDao();
+        this.albumStatsDao = new AlbumStatsDao();
     }
 
     public void createReview(Review review) throws SQLException {
-        try (Connection conn = DatabaseService.getConnection()) {
-            reviewDao.insertReview(conn, review);
+        try {
+            createReviews(Collections.singletonList(review));
         } catch (SQLException e) {
             e.printStackTrace();
             throw e;
         }
     }
+
+    /**
+     * Inserts a batch of reviews and adds them to the AlbumStats counters in one transaction,
+     * so the rows and the counters are either all committed or none are.
+     * Reviews whose ID is already stored are skipped and not counted again: only the rows the
+     * insert reports as new are added to the counters, so two batches carrying the same
+     * redelivered review cannot both count it.
+     *
+     * @return The number of reviews that were new.
+     */
+    public int createReviews(List<Review> reviews) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return insertNewReviews(reviews);
+            } catch (SQLException e) {
+                if (!SERIALIZATION_FAILURE.equals(e.getSQLState()) || attempt >= MAX_DEADLOCK_RETRIES) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int insertNewReviews(List<Review> reviews) throws SQLException {
+        try (Connection conn = DatabaseService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Review> newReviews = reviewDao.insertNewReviews(conn, reviews);
+                if (!newReviews.isEmpty()) {
+                    albumStatsDao.incrementStats(conn, newReviews);
+                }
+                conn.commit();
+                return newReviews.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package util;
+
+/**
+ * Encodes and decodes review messages published to the review queue.
+ *
+ * The binary envelope is 30 bytes, big-endian:
+ * <pre>
+ * offset 0  version        (1 byte, currently 1)
+ * offset 1  op             (1 byte, 1 = like, 0 = dislike)
+ * offset 2  albumId        (4 bytes)
+ * offset 6  timestamp      (8 bytes, epoch millis when the review was received)
+ * offset 14 reviewId       (16 bytes, most significant bits first)
+ * </pre>
+ * The legacy "like,albumId" / "dislike,albumId" text form is still accepted by the decoder. Its first byte
+ * is always 'l' or 'd', which never collides with a version byte.
+ *
+ * Encoding writes into a caller-supplied array and the field readers work directly on the message body,
+ * so neither side allocates strings or intermediate arrays.
+ */
+public final class ReviewMessageCodec {
+    public static final byte VERSION = 1;
+    public static final int ENCODED_SIZE = 30;
+
+    private static final byte OP_DISLIKE = 0;
+    private static final byte OP_LIKE = 1;
+    private static final int OFFSET_OP = 1;
+    private static final int OFFSET_ALBUM_ID = 2;
+    private static final int OFFSET_TIMESTAMP = 6;
+    private static final int OFFSET_REVIEW_ID = 14;
+
+    private ReviewMessageCodec() {}
+
+    /**
+     * Writes a binary review envelope into dst starting at offset.
+     */
+    public static void encode(byte[] dst, int offset, boolean like, int albumId, long timestamp,
+                              long reviewIdMostSigBits, long reviewIdLeastSigBits) {
+        dst[offset] = VERSION;
+        dst[offset + OFFSET_OP] = like ? OP_LIKE : OP_DISLIKE;
+        putInt(dst, offset + OFFSET_ALBUM_ID, albumId);
+        putLong(dst, offset + OFFSET_TIMESTAMP, timestamp);
+        putLong(dst, offset + OFFSET_REVIEW_ID, reviewIdMostSigBits);
+        putLong(dst, offset + OFFSET_REVIEW_ID + 8, reviewIdLeastSigBits);
+    }
+
+    /**
+     * Returns true if the body is a binary envelope, false if it is a legacy text message.
+     *
+     * @throws IllegalArgumentException if the body is neither.
+     */
+    public static boolean isBinary(byte[] body) {
+        if (body.length == ENCODED_SIZE && body[0] == VERSION) {
+            return true;
+        }
+        if (body.length > 0 && (body[0] == 'l' || body[0] == 'd')) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown review message format");
+    }
+
+    public static boolean isLike(byte[] body) {
+        if (isBinary(body)) {
+            byte op = body[OFFSET_OP];
+            if (op != OP_LIKE && op != OP_DISLIKE) {
+                throw new IllegalArgumentException("Unknown review op " + op);
+            }
+            return op == OP_LIKE;
+        }
+        int comma = indexOfComma(body);
+        if (matches(body, comma, "like")) {
+            return true;
+        }
+        if (matches(body, comma, "dislike")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown review op in legacy message");
+    }
+
+    public static int getAlbumId(byte[] body) {
+        if (isBinary(body)) {
+            return getInt(body, OFFSET_ALBUM_ID);
+        }
+        int comma = indexOfComma(body);
+        if (comma == body.length - 1) {
+            throw new IllegalArgumentException("Missing album ID in legacy message");
+        }
+        int albumId = 0;
+        for (int i = comma + 1; i < body.length; i++) {
+            int digit = body[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid album ID in legacy message");
+            }
+            albumId = Math.addExact(Math.multiplyExact(albumId, 10), digit);
+        }
+        return albumId;
+    }
+
+    /**
+     * Returns the timestamp of a binary envelope, or -1 for a legacy message, which carries none.
+     */
+    public static long getTimestamp(byte[] body) {
+        return isBinary(body) ? getLong(body, OFFSET_TIMESTAMP) : -1;
+    }
+
+    /**
+     * Returns true if the message carries a review ID; legacy messages do not.
+     */
+    public static boolean hasReviewId(byte[] body) {
+        return isBinary(body);
+    }
+
+    public static long getReviewIdMostSigBits(byte[] body) {
+        return getLong(body, OFFSET_REVIEW_ID);
+    }
+
+    public static long getReviewIdLeastSigBits(byte[] body) {
+        return getLong(body, OFFSET_REVIEW_ID + 8);
+    }
+
+    private static int indexOfComma(byte[] body) {
+        for (int i = 0; i < body.length; i++) {
+            if (body[i] == ',') {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Malformed legacy review message");
+    }
+
+    private static boolean matches(byte[] body, int length, String ascii) {
+        if (length != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (body[i] != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putInt(byte[] dst, int offset, int value) {
+        dst[offset] = (byte) (value >>> 24);
+        dst[offset + 1] = (byte) (value >>> 16);
+        dst[offset + 2] = (byte) (value >>> 8);
+        dst[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] dst, int offset, long value) {
+        putInt(dst, offset, (int) (value >>> 32));
+        putInt(dst, offset + 4, (int) value);
+    }
+
+    private static int getInt(byte[] src, int offset) {
+        return (src[offset] & 0xff) << 24
+                | (src[offset + 1] & 0xff) << 16
+                | (src[offset + 2] & 0xff) << 8
+                | (src[offset + 3] & 0xff);
+    }
+
+    private static long getLong(byte[] src, int offset) {
+        return ((long) getInt(src, offset) << 32) | (getInt(src, offset + 4) & 0xffffffffL);
+    }
+}
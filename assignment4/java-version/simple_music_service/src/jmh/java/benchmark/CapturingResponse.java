@@ -0,0 +1,91 @@
+package benchmark;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+
+/**
+ * A response that keeps the body in memory so the writers can run without a container. Only the
+ * calls the writers make are implemented; anything else reaching the wrapped response throws.
+ */
+class CapturingResponse extends HttpServletResponseWrapper {
+    private static final HttpServletResponse UNSUPPORTED = (HttpServletResponse) Proxy.newProxyInstance(
+            CapturingResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class},
+            (proxy, method, args) -> {
+                throw new UnsupportedOperationException(method.getName());
+            });
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private final ServletOutputStream out = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("setWriteListener");
+        }
+    };
+    private String contentType;
+    private int contentLength = -1;
+
+    CapturingResponse() {
+        super(UNSUPPORTED);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    int getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Returns the bytes written since the last reset.
+     */
+    byte[] getBody() {
+        return body.toByteArray();
+    }
+
+    int getBodySize() {
+        return body.size();
+    }
+
+    @Override
+    public void reset() {
+        body.reset();
+        contentType = null;
+        contentLength = -1;
+    }
+}
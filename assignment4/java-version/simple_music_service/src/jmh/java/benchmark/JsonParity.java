@@ -0,0 +1,129 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import dto.AlbumInfo;
+import dto.AlbumLikes;
+import dto.ErrorMsg;
+import dto.ImageMetaData;
+import dto.Likes;
+import util.JsonResponseWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that JsonResponseWriter produces byte-for-byte what Gson's toJson followed by
+ * getBytes(UTF_8) produced before it, over fixed edge cases and random strings drawn from
+ * every character class the writer treats differently. Runs before every
+ * JsonResponseWriterBenchmark fork, or on its own:
+ * mvn -Pjmh test-compile exec:exec -Djmh.main=benchmark.JsonParity -Djmh.args=100000
+ */
+public class JsonParity {
+    private static final String[] EDGE_CASES = {
+            "", "Sex Pistols", "Never Mind the Bollocks", "1977",
+            "\"quoted\" \\ back\\slash", "tab\tnewline\nreturn\rbackspace\bformfeed\f",
+            "\u0000\u0001\u001f\u007f\u0080", "<script>alert('x')</script> & a=b",
+            "line\u2028separator\u2029paragraph", "caf\u00e9 na\u00efve \u00df \u20ac \u4e2d\u6587",
+            "emoji \ud83c\udfb5 pair", "lone high \ud83c end", "lone low \udfb5 start", "\udfb5\ud83c",
+            "\ud83c", "\ufffd\uffff\ufeff",
+    };
+    // One of each kind of character the writer branches on, plus surrogate halves to pair or leave alone
+    private static final char[] ALPHABET = (
+            "aZ09 \"\\/\t\b\n\r\f\u0000\u0007\u001f<>&='\u2028\u2029\u007f\u0080\u07ff\u0800\u00e9\u20ac\uffff"
+                    + "\ud800\udbff\udc00\udfff").toCharArray();
+
+    private final Gson gson = new Gson();
+    private final CapturingResponse res = new CapturingResponse();
+    private int checked;
+
+    public static void main(String[] args) throws IOException {
+        int randomCases = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        JsonParity parity = new JsonParity();
+        parity.checkAll(randomCases, 42);
+        System.out.println("JsonResponseWriter matches Gson on " + parity.checked + " bodies");
+    }
+
+    /**
+     * Runs every edge case, then {@code randomCases} random strings, through each writer.
+     *
+     * @throws AssertionError on the first body that differs from Gson's.
+     */
+    void checkAll(int randomCases, long seed) throws IOException {
+        for (String s : EDGE_CASES) {
+            checkStrings(s, s, s);
+        }
+        checkStrings(null, null, null);
+        checkStrings("artist", null, "2001");
+        checkStrings(null, "title", null);
+        Random random = new Random(seed);
+        for (int i = 0; i < randomCases; i++) {
+            checkStrings(randomString(random), randomString(random), randomString(random));
+        }
+        int[] ints = {0, 1, -1, 9, 10, 99, 100, 12345, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE + 1};
+        for (int likes : ints) {
+            for (int dislikes : ints) {
+                check(gson.toJson(new Likes(likes, dislikes)), () -> JsonResponseWriter.writeLikes(res, new Likes(likes, dislikes)));
+            }
+        }
+        for (int i = 0; i < randomCases; i++) {
+            int likes = random.nextInt();
+            int dislikes = random.nextInt(1000);
+            check(gson.toJson(new Likes(likes, dislikes)), () -> JsonResponseWriter.writeLikes(res, new Likes(likes, dislikes)));
+        }
+        checkLists(random);
+    }
+
+    private void checkStrings(String a, String b, String c) throws IOException {
+        AlbumInfo albumInfo = new AlbumInfo(a, b, c);
+        check(gson.toJson(albumInfo), () -> JsonResponseWriter.writeAlbumInfo(res, albumInfo));
+        ImageMetaData imageMetaData = new ImageMetaData(a, b);
+        check(gson.toJson(imageMetaData), () -> JsonResponseWriter.writeImageMetaData(res, imageMetaData));
+        check(gson.toJson(new ErrorMsg(a)), () -> JsonResponseWriter.writeError(res, a));
+        check(gson.toJson(new ErrorMsg(a)), () -> JsonResponseWriter.writeBody(res, JsonResponseWriter.errorBody(a)));
+    }
+
+    private void checkLists(Random random) throws IOException {
+        for (int size = 0; size < 20; size++) {
+            List<ImageMetaData> images = new ArrayList<>();
+            List<AlbumLikes> likes = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                images.add(new ImageMetaData(randomString(random), i % 3 == 0 ? null : String.valueOf(random.nextInt())));
+                likes.add(new AlbumLikes(i % 4 == 0 ? null : randomString(random), random.nextInt(), random.nextInt()));
+            }
+            check(gson.toJson(images), () -> JsonResponseWriter.writeImageMetaDataList(res, images));
+            check(gson.toJson(likes), () -> JsonResponseWriter.writeAlbumLikesList(res, likes));
+        }
+    }
+
+    private static String randomString(Random random) {
+        // Long enough now and then to make the thread's buffer grow past its retained size
+        int length = random.nextInt(50) == 0 ? 4000 + random.nextInt(2000) : random.nextInt(24);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private void check(String gsonJson, Write write) throws IOException {
+        byte[] expected = gsonJson.getBytes(StandardCharsets.UTF_8);
+        res.reset();
+        write.run();
+        byte[] actual = res.getBody();
+        if (!Arrays.equals(expected, actual) || res.getContentLength() != actual.length) {
+            throw new AssertionError("JsonResponseWriter differs from Gson for " + gsonJson
+                    + "\n  gson:   " + Arrays.toString(expected)
+                    + "\n  writer: " + Arrays.toString(actual)
+                    + "\n  content length " + res.getContentLength());
+        }
+        checked++;
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+}
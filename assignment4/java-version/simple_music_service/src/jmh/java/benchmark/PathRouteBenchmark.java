@@ -0,0 +1,114 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.PathRoute;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares PathRoute with the String.split and Integer.parseInt parsing the servlets used before,
+ * on valid paths and on each kind of rejected path. Run with -prof gc for the allocation per parse.
+ * Every fork first checks that both classify a set of paths the same way.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathRouteBenchmark {
+    private static final long MISSING = -1;
+    private static final long INVALID_FORMAT = -2;
+    private static final long INVALID_ID = -3;
+
+    // PathRoute takes one trailing slash where split dropped any number, and rejects a '+' sign
+    // that parseInt took, so neither shape is in here
+    private static final String[] PARITY_PATHS = {
+            null, "", "/", "//", "/0", "/12345", "/12345/", "/2147483647", "/2147483648", "/-5", "/1a",
+            "/1a/2", "/1/2", "//5", "/a/", "x/5",
+            "/like/1", "/dislike/42/", "/like/", "/like//", "/like/x", "/like/1x/2", "/like/1/2", "/likes/1",
+            "/dislike", "/Like/1", "/like/99999999999",
+    };
+
+    @Param({"/12345", "/1a", "/1a/2", "/like/12345", "/dislike/7x"})
+    private String path;
+    private boolean review;
+
+    @Setup
+    public void setUp() {
+        for (String p : PARITY_PATHS) {
+            boolean reviewPath = p != null && (p.startsWith("/like") || p.startsWith("/dislike"));
+            long expected = reviewPath ? splitReview(p) : splitAlbum(p);
+            long actual = encode(reviewPath ? PathRoute.parseReview(p) : PathRoute.parseAlbum(p));
+            if (expected != actual) {
+                throw new AssertionError("PathRoute parses " + p + " as " + actual + ", split as " + expected);
+            }
+        }
+        review = path.startsWith("/like/") || path.startsWith("/dislike/");
+    }
+
+    @Benchmark
+    public long pathRoute() {
+        return encode(review ? PathRoute.parseReview(path) : PathRoute.parseAlbum(path));
+    }
+
+    @Benchmark
+    public long split() {
+        return review ? splitReview(path) : splitAlbum(path);
+    }
+
+    /**
+     * Returns the album ID shifted left with the like flag in the low bit, or a negative error code.
+     */
+    private static long encode(PathRoute route) {
+        if (!route.isValid()) {
+            return -(route.getError().ordinal() + 1);
+        }
+        return (long) route.getAlbumId() << 1 | (route.isLike() ? 1 : 0);
+    }
+
+    private static long splitAlbum(String pathInfo) {
+        if (pathInfo == null || pathInfo.isEmpty()) {
+            return MISSING;
+        }
+        // urlParts = [, 123]
+        String[] urlParts = pathInfo.split("/");
+        if (urlParts.length != 2 || !urlParts[0].isEmpty()) {
+            return INVALID_FORMAT;
+        }
+        return parseId(urlParts[1], false);
+    }
+
+    private static long splitReview(String pathInfo) {
+        if (pathInfo == null || pathInfo.isEmpty()) {
+            return MISSING;
+        }
+        // pathParts = [, likeornot, albumId]
+        String[] pathParts = pathInfo.split("/");
+        if (pathParts.length != 3 || !pathParts[0].isEmpty()
+                || !(pathParts[1].equals("like") || pathParts[1].equals("dislike")) || pathParts[2].isEmpty()) {
+            return INVALID_FORMAT;
+        }
+        return parseId(pathParts[2], pathParts[1].equals("like"));
+    }
+
+    private static long parseId(String albumId, boolean like) {
+        int id;
+        try {
+            id = Integer.parseInt(albumId);
+        } catch (NumberFormatException e) {
+            return INVALID_ID;
+        }
+        return id < 0 ? INVALID_ID : (long) id << 1 | (like ? 1 : 0);
+    }
+}
@@ -3,15 +3,19 @@ package dao;
 import model.Album;
 import util.UUIDUtil;
 
-import java.io.InputStream;
 import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public class AlbumDAO {
 
-
+    /**
+     * Reads the album metadata only. The imageData column is deliberately left out of the projection.
+     */
     public Album getAlbumByKey(Connection conn, int albumId) throws SQLException {
-        String query = "SELECT * FROM Album WHERE albumID = ?";
+        String query = "SELECT artist, title, year FROM Album WHERE albumID = ?";
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, albumId);
 
@@ -27,14 +31,76 @@ public class AlbumDAO {
         return null;
     }
 
-    public int insertAlbum(Connection conn, Album album, InputStream imageDataStream, long imageSize) throws SQLException {
-        String insertSQL = "INSERT INTO Album(artist, title, year, imageData) VALUES (?, ?, ?, ?)";
+    /**
+     * Probes for an album row using the primary key index only.
+     */
+    public boolean albumExistsByKey(Connection conn, int albumId) throws SQLException {
+        String query = "SELECT 1 FROM Album WHERE albumID = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, albumId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Probes for several album rows with one primary key IN lookup.
+     *
+     * @return The subset of the given IDs that exist.
+     */
+    public Set<Integer> findExistingAlbumIds(Connection conn, List<Integer> albumIds) throws SQLException {
+        Set<Integer> existing = new HashSet<>();
+        if (albumIds.isEmpty()) {
+            return existing;
+        }
+        StringBuilder query = new StringBuilder("SELECT albumID FROM Album WHERE albumID IN (");
+        for (int i = 0; i < albumIds.size(); i++) {
+            query.append(i == 0 ? "?" : ",?");
+        }
+        query.append(')');
+        try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            for (int i = 0; i < albumIds.size(); i++) {
+                stmt.setInt(i + 1, albumIds.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getInt("albumID"));
+                }
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Reads the content key of the album's image in the image store.
+     *
+     * @return The image key, or null if the album was not found.
+     */
+    public String getImageKey(Connection conn, int albumId) throws SQLException {
+        String query = "SELECT imageHash FROM Album WHERE albumID = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setInt(1, albumId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString("imageHash");
+                }
+            }
+        }
+        return null;
+    }
+
+    public int insertAlbum(Connection conn, Album album, String imageKey) throws SQLException {
+        String insertSQL = "INSERT INTO Album(artist, title, year, imageHash) VALUES (?, ?, ?, ?)";
         try (PreparedStatement stmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
 
             stmt.setString(1, album.getArtist());
             stmt.setString(2, album.getTitle());
             stmt.setString(3, album.getYear());
-            stmt.setBinaryStream(4, imageDataStream, imageSize);
+            stmt.setString(4, imageKey);
 
             int affectedRows = stmt.executeUpdate();
 
@@ -51,4 +117,38 @@ public class AlbumDAO {
             }
         }
     }
+
+    /**
+     * Inserts several albums with one JDBC batch, which the driver rewrites into a multi-row INSERT.
+     * Should run inside a transaction so the batch is all or nothing.
+     *
+     * @param albums    The albums to insert.
+     * @param imageKeys The image key of each album, in the same order.
+     * @return The generated album IDs, in the same order as the albums.
+     */
+    public int[] insertAlbums(Connection conn, List<Album> albums, List<String> imageKeys) throws SQLException {
+        String insertSQL = "INSERT INTO Album(artist, title, year, imageHash) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < albums.size(); i++) {
+                Album album = albums.get(i);
+                stmt.setString(1, album.getArtist());
+                stmt.setString(2, album.getTitle());
+                stmt.setString(3, album.getYear());
+                stmt.setString(4, imageKeys.get(i));
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            int[] albumIds = new int[albums.size()];
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                for (int i = 0; i < albumIds.length; i++) {
+                    if (!generatedKeys.next()) {
+                        throw new SQLException("Creating albums failed, only " + i + " of " + albumIds.length + " IDs obtained.");
+                    }
+                    albumIds[i] = generatedKeys.getInt(1);
+                }
+            }
+            return albumIds;
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Accesses the AlbumImage table:
+ * AlbumImage(imageHash CHAR(64) PRIMARY KEY, imageSize BIGINT, imageData LONGBLOB)
+ */
+public class ImageDAO {
+
+    public boolean imageExists(Connection conn, String imageHash) throws SQLException {
+        String query = "SELECT 1 FROM AlbumImage WHERE imageHash = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, imageHash);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public void insertImageIfAbsent(Connection conn, String imageHash, InputStream imageDataStream, long imageSize) throws SQLException {
+        String insertSQL = "INSERT IGNORE INTO AlbumImage(imageHash, imageSize, imageData) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(insertSQL)) {
+            stmt.setString(1, imageHash);
+            stmt.setLong(2, imageSize);
+            stmt.setBinaryStream(3, imageDataStream, imageSize);
+
+            stmt.executeUpdate();
+        }
+    }
+
+    public boolean writeImage(Connection conn, String imageHash, OutputStream out) throws SQLException, IOException {
+        String query = "SELECT imageData FROM AlbumImage WHERE imageHash = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            stmt.setString(1, imageHash);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                try (InputStream imageStream = rs.getBinaryStream("imageData")) {
+                    if (imageStream != null) {
+                        imageStream.transferTo(out);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+}
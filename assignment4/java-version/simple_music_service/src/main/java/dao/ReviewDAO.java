@@ -4,15 +4,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ReviewDAO {
 
+    /**
+     * Reads the album's counts from the AlbumStats table maintained by the review consumer,
+     * a single primary key lookup regardless of how many reviews the album has.
+     */
     public Map<String, Integer> getLikesDislikesForAlbum(Connection conn, int albumId) throws SQLException {
-        String query = "SELECT "
-                + "SUM(CASE WHEN likeDislikeFlag = TRUE THEN 1 ELSE 0 END) AS likes, "
-                + "SUM(CASE WHEN likeDislikeFlag = FALSE THEN 1 ELSE 0 END) AS dislikes "
-                + "FROM Review WHERE albumID = ?";
+        String query = "SELECT likes, dislikes FROM AlbumStats WHERE albumID = ?";
 
         try (PreparedStatement stmt = conn.prepareStatement(query)) {
             stmt.setInt(1, albumId);
@@ -31,4 +33,34 @@ public class ReviewDAO {
         emptyResult.put("dislikes", 0);
         return emptyResult;
     }
+
+    /**
+     * Reads the counts of several albums from AlbumStats with one IN query.
+     *
+     * @return albumId -> {likes, dislikes}; albums without reviews are absent.
+     */
+    public Map<Integer, int[]> getLikesDislikesForAlbums(Connection conn, List<Integer> albumIds) throws SQLException {
+        Map<Integer, int[]> counts = new HashMap<>();
+        if (albumIds.isEmpty()) {
+            return counts;
+        }
+        StringBuilder query = new StringBuilder("SELECT albumID, likes, dislikes FROM AlbumStats WHERE albumID IN (");
+        for (int i = 0; i < albumIds.size(); i++) {
+            query.append(i == 0 ? "?" : ",?");
+        }
+        query.append(')');
+
+        try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+            for (int i = 0; i < albumIds.size(); i++) {
+                stmt.setInt(i + 1, albumIds.get(i));
+            }
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getInt("albumID"), new int[]{rs.getInt("likes"), rs.getInt("dislikes")});
+                }
+            }
+        }
+        return counts;
+    }
 }
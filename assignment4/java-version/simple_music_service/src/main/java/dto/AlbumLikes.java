@@ -0,0 +1,25 @@
+package dto;
+
+public class AlbumLikes {
+    private String albumID;
+    private int likes;
+    private int dislikes;
+
+    public AlbumLikes(String albumID, int likes, int dislikes) {
+        this.albumID = albumID;
+        this.likes = likes;
+        this.dislikes = dislikes;
+    }
+
+    public String getAlbumId() {
+        return albumID;
+    }
+
+    public int getLikes() {
+        return likes;
+    }
+
+    public int getDislikes() {
+        return dislikes;
+    }
+}
@@ -0,0 +1,64 @@
+package imagestore;
+
+import util.ImageUploadBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Stores each distinct image as a file named by its digest, fanned out into
+ * sub-directories by the first two hex characters to keep directories small.
+ */
+public class FileSystemImageStore implements ImageStore {
+    private final Path root;
+
+    public FileSystemImageStore(String rootDir) {
+        if (rootDir == null || rootDir.isEmpty()) {
+            throw new IllegalArgumentException("IMAGE_STORE_DIR must be set for the filesystem image store");
+        }
+        this.root = Paths.get(rootDir);
+    }
+
+    @Override
+    public String store(ImageUploadBuffer image) throws IOException {
+        String key = image.getSha256Hex();
+        Path target = pathFor(key);
+        if (Files.exists(target)) {
+            return key;
+        }
+        Files.createDirectories(target.getParent());
+        // Write to a temp file in the same directory and move it into place, so readers never see a partial image
+        Path tmp = Files.createTempFile(target.getParent(), key, ".tmp");
+        try {
+            try (InputStream in = image.openStream()) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // A concurrent upload of the same image won the race, which is fine
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return key;
+    }
+
+    @Override
+    public boolean writeImage(String imageKey, OutputStream out) throws IOException {
+        Path path = pathFor(imageKey);
+        if (!Files.exists(path)) {
+            return false;
+        }
+        Files.copy(path, out);
+        return true;
+    }
+
+    private Path pathFor(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+}
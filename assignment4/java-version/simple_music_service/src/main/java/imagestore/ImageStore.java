@@ -0,0 +1,42 @@
+package imagestore;
+
+import util.ImageUploadBuffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+
+/**
+ * A content-addressed store for album images. Images are keyed by the SHA-256 digest of their
+ * bytes, so an image uploaded many times is only stored once and albums keep just the key.
+ */
+public interface ImageStore {
+
+    /**
+     * Stores the image unless an identical one is already present.
+     *
+     * @param image The uploaded image.
+     * @return The content key (lowercase hex SHA-256) to record on the album row.
+     */
+    String store(ImageUploadBuffer image) throws IOException, SQLException;
+
+    /**
+     * Streams a stored image into the given output stream.
+     *
+     * @param imageKey The content key returned by {@link #store(ImageUploadBuffer)}.
+     * @param out      The destination stream.
+     * @return true if the image was found, false otherwise.
+     */
+    boolean writeImage(String imageKey, OutputStream out) throws IOException, SQLException;
+
+    /**
+     * Creates the store selected by the IMAGE_STORE environment variable:
+     * "filesystem" stores files under IMAGE_STORE_DIR, anything else keeps BLOBs in MySQL.
+     */
+    static ImageStore fromEnv() {
+        if ("filesystem".equalsIgnoreCase(System.getenv("IMAGE_STORE"))) {
+            return new FileSystemImageStore(System.getenv("IMAGE_STORE_DIR"));
+        }
+        return new MySQLImageStore();
+    }
+}
@@ -0,0 +1,43 @@
+package imagestore;
+
+import dao.ImageDAO;
+import service.DatabaseService;
+import util.ImageUploadBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Keeps image BLOBs in MySQL, in a table keyed by digest instead of on every Album row.
+ */
+public class MySQLImageStore implements ImageStore {
+    private final ImageDAO imageDAO;
+
+    public MySQLImageStore() {
+        this.imageDAO = new ImageDAO();
+    }
+
+    @Override
+    public String store(ImageUploadBuffer image) throws IOException, SQLException {
+        String key = image.getSha256Hex();
+        try (Connection conn = DatabaseService.getConnection()) {
+            // Probe first so duplicate uploads never send the BLOB over the wire
+            if (!imageDAO.imageExists(conn, key)) {
+                try (InputStream in = image.openStream()) {
+                    imageDAO.insertImageIfAbsent(conn, key, in, image.getSize());
+                }
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public boolean writeImage(String imageKey, OutputStream out) throws IOException, SQLException {
+        try (Connection conn = DatabaseService.getConnection()) {
+            return imageDAO.writeImage(conn, imageKey, out);
+        }
+    }
+}
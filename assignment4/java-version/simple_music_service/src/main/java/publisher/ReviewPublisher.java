@@ -0,0 +1,258 @@
+package publisher;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ShutdownSignalException;
+import rmqpool.RMQChannelPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes review messages to the review queue with publisher confirms.
+ * Request threads enqueue messages and receive a future that completes once the broker has
+ * confirmed the message. A single publisher thread owns the channel and publishes queued messages
+ * back to back, so request threads never wait for a channel or contend on one. The number of
+ * unconfirmed messages is bounded; when the window is full new messages are rejected at once with a
+ * {@link RejectedExecutionException} so callers can shed load. publish() never blocks, so it is safe
+ * to call from a small async executor.
+ *
+ * The channel is borrowed from the channel pool. When the broker or a connection failure closes it,
+ * its unconfirmed messages fail, the channel is invalidated in the pool and the publisher thread
+ * borrows a fresh one and puts it into confirm mode before publishing again.
+ */
+public class ReviewPublisher {
+    public static final String QUEUE_NAME = "reviewQueue";
+    private static final Logger logger = Logger.getLogger(ReviewPublisher.class.getName());
+    private static final long REOPEN_BACKOFF_MILLIS = 1000;
+
+    private final RMQChannelPool channelPool;
+    private final Semaphore window;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingPublish> queue = new LinkedBlockingQueue<>();
+    private final Thread publisherThread;
+    // Replaced by the publisher thread only
+    private volatile ConfirmChannel current;
+    private volatile boolean running = true;
+    // Only touched by the publisher thread
+    private long lastOpenFailureMillis;
+
+    /**
+     * Borrows the first channel, declares the review queue and puts the channel into confirm mode.
+     *
+     * @param channelPool    The pool the publisher borrows its channel from.
+     * @param maxOutstanding The maximum number of queued or unconfirmed messages.
+     * @param maxBatchSize   The maximum number of messages published in one pass of the publisher thread.
+     */
+    public ReviewPublisher(RMQChannelPool channelPool, int maxOutstanding, int maxBatchSize) throws IOException {
+        this.channelPool = channelPool;
+        this.window = new Semaphore(maxOutstanding);
+        this.maxBatchSize = maxBatchSize;
+        this.current = openChannel();
+        this.publisherThread = new Thread(this::run, "review-publisher");
+    }
+
+    public void start() {
+        publisherThread.start();
+    }
+
+    /**
+     * Queues a message for publishing.
+     *
+     * @param body The message body.
+     * @return A future completed when the broker confirms the message, or completed exceptionally
+     *         with a RejectedExecutionException if the outstanding window is full.
+     */
+    public CompletableFuture<Void> publish(byte[] body) {
+        PendingPublish pending = new PendingPublish(body);
+        if (!running || !window.tryAcquire()) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Too many unconfirmed review messages"));
+            return pending.future;
+        }
+        queue.add(pending);
+        return pending.future;
+    }
+
+    public int getOutstandingCount() {
+        ConfirmChannel confirmChannel = current;
+        return (confirmChannel == null ? 0 : confirmChannel.outstanding.size()) + queue.size();
+    }
+
+    /**
+     * Stops the publisher thread and fails every message still queued or unconfirmed.
+     */
+    public void close() {
+        running = false;
+        publisherThread.interrupt();
+        try {
+            publisherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingPublish> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingPublish pending : remaining) {
+            fail(pending, new IOException("Review publisher closed"));
+        }
+        if (current != null) {
+            // Closing the channel fails its unconfirmed messages through the shutdown listener
+            channelPool.invalidate(current.channel);
+            current = null;
+        }
+    }
+
+    private void run() {
+        List<PendingPublish> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            ConfirmChannel confirmChannel = ensureOpen();
+            for (PendingPublish pending : batch) {
+                if (confirmChannel == null) {
+                    fail(pending, new IOException("No RabbitMQ channel available"));
+                    continue;
+                }
+                try {
+                    confirmChannel.publish(pending);
+                } catch (IOException | ShutdownSignalException e) {
+                    fail(pending, e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Returns the current channel, replacing it first if it has been closed.
+     *
+     * @return An open channel in confirm mode, or null if none could be opened; the next attempt waits
+     *         for the backoff so a broker outage does not spin the publisher thread.
+     */
+    private ConfirmChannel ensureOpen() {
+        ConfirmChannel confirmChannel = current;
+        if (confirmChannel != null && channelPool.isValid(confirmChannel.channel)) {
+            return confirmChannel;
+        }
+        if (confirmChannel != null) {
+            logger.warning("Review publisher channel closed, borrowing a new one");
+            channelPool.invalidate(confirmChannel.channel);
+            confirmChannel.failOutstanding(new IOException("Review publisher channel closed"));
+            current = null;
+        } else if (System.currentTimeMillis() - lastOpenFailureMillis < REOPEN_BACKOFF_MILLIS) {
+            return null;
+        }
+        try {
+            current = openChannel();
+            return current;
+        } catch (IOException | ShutdownSignalException e) {
+            lastOpenFailureMillis = System.currentTimeMillis();
+            logger.log(Level.SEVERE, "Failed to open a review publisher channel", e);
+            return null;
+        }
+    }
+
+    private ConfirmChannel openChannel() throws IOException {
+        Channel channel = channelPool.borrowObject();
+        try {
+            channel.queueDeclare(QUEUE_NAME, false, false, false, null);
+            channel.confirmSelect();
+            return new ConfirmChannel(channel);
+        } catch (IOException | ShutdownSignalException e) {
+            channelPool.invalidate(channel);
+            throw e;
+        }
+    }
+
+    private void fail(PendingPublish pending, Exception error) {
+        window.release();
+        pending.future.completeExceptionally(error);
+    }
+
+    /**
+     * A channel in confirm mode with the messages awaiting confirms on it. Sequence numbers restart
+     * on every channel, so each channel tracks its own outstanding messages and its listeners only
+     * ever settle those.
+     */
+    private class ConfirmChannel {
+        private final Channel channel;
+        // publish sequence number -> message awaiting its confirm
+        private final ConcurrentNavigableMap<Long, PendingPublish> outstanding = new ConcurrentSkipListMap<>();
+
+        ConfirmChannel(Channel channel) {
+            this.channel = channel;
+            channel.addConfirmListener((seqNo, multiple) -> settle(seqNo, multiple, null),
+                    (seqNo, multiple) -> settle(seqNo, multiple, new IOException("Broker rejected review message " + seqNo)));
+            channel.addShutdownListener(this::failOutstanding);
+        }
+
+        void publish(PendingPublish pending) throws IOException {
+            long seqNo = channel.getNextPublishSeqNo();
+            outstanding.put(seqNo, pending);
+            try {
+                channel.basicPublish("", QUEUE_NAME, null, pending.body);
+            } catch (IOException | ShutdownSignalException e) {
+                // Only fail it here if the shutdown listener has not already done so
+                if (outstanding.remove(seqNo) != null) {
+                    throw e;
+                }
+            }
+        }
+
+        private void settle(long seqNo, boolean multiple, Exception error) {
+            if (multiple) {
+                ConcurrentNavigableMap<Long, PendingPublish> confirmed = outstanding.headMap(seqNo, true);
+                for (Map.Entry<Long, PendingPublish> entry : confirmed.entrySet()) {
+                    if (confirmed.remove(entry.getKey()) != null) {
+                        complete(entry.getValue(), error);
+                    }
+                }
+            } else {
+                PendingPublish pending = outstanding.remove(seqNo);
+                if (pending != null) {
+                    complete(pending, error);
+                }
+            }
+        }
+
+        void failOutstanding(Exception cause) {
+            for (Long seqNo : outstanding.keySet()) {
+                PendingPublish pending = outstanding.remove(seqNo);
+                if (pending != null) {
+                    fail(pending, cause);
+                }
+            }
+        }
+
+        private void complete(PendingPublish pending, Exception error) {
+            if (error != null) {
+                fail(pending, error);
+            } else {
+                window.release();
+                pending.future.complete(null);
+            }
+        }
+    }
+
+    private static class PendingPublish {
+        private final byte[] body;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingPublish(byte[] body) {
+            this.body = body;
+        }
+    }
+}
@@ -20,6 +20,8 @@ import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
 
 import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A simple RabbitMQ channel factory based on the APche pooling libraries
@@ -29,17 +31,20 @@ public class RMQChannelFactory extends BasePooledObjectFactory<Channel> {
     // Valid RMQ connection
     private final Connection connection;
     // used to count created channels for debugging
-    private int count;
+    private final AtomicInteger count;
 
     public RMQChannelFactory(Connection connection) {
         this.connection = connection;
-        count = 0;
+        count = new AtomicInteger();
     }
 
     @Override
-    synchronized public Channel create() throws IOException {
-        count ++;
+    public Channel create() throws IOException {
+        count.incrementAndGet();
         Channel chan = connection.createChannel();
+        if (chan == null) {
+            throw new IOException("No channel available on the RabbitMQ connection");
+        }
         // Uncomment the line below to validate the expected number of channels are being created
         // System.out.println("Channel created: " + count);
         return chan;
@@ -52,10 +57,27 @@ public class RMQChannelFactory extends BasePooledObjectFactory<Channel> {
         return new DefaultPooledObject<>(channel);
     }
 
-    public int getChannelCount() {
-        return count;
+    /**
+     * A channel is only worth handing out while it is open; the broker closes channels on protocol errors.
+     */
+    @Override
+    public boolean validateObject(PooledObject<Channel> p) {
+        return p.getObject().isOpen();
     }
 
-    // for all other methods, the no-op implementation
-    // in BasePooledObjectFactory will suffice
-}
\ No newline at end of file
+    @Override
+    public void destroyObject(PooledObject<Channel> p) {
+        Channel channel = p.getObject();
+        if (channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (IOException | TimeoutException e) {
+                // The channel is being discarded anyway
+            }
+        }
+    }
+
+    public int getChannelCount() {
+        return count.get();
+    }
+}
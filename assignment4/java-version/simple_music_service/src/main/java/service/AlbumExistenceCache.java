@@ -0,0 +1,126 @@
+package service;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, process-wide cache recording which album IDs exist.
+ * Albums are never deleted, so known IDs are cached without expiry. Unknown IDs are cached
+ * for a short TTL so repeated lookups of a missing album do not hit MySQL every time, while
+ * an album created on another server instance still becomes visible quickly.
+ *
+ * Eviction is a batched clock: every entry carries a reference bit set on lookup. Once the cache
+ * grows past ALBUM_CACHE_MAX_SIZE, one thread sweeps it down to a low-water mark, dropping expired
+ * entries and entries not read since the previous sweep and clearing the bit of the rest. The
+ * sweep only runs once per (max - low-water) inserts, so inserts stay O(1) amortized.
+ */
+public class AlbumExistenceCache {
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+    private static final int MAX_SIZE = getEnvInt("ALBUM_CACHE_MAX_SIZE", 100000);
+    // Sweep down to 90% of the bound so the next sweep is MAX_SIZE / 10 inserts away
+    private static final int LOW_WATER_SIZE = MAX_SIZE - Math.max(1, MAX_SIZE / 10);
+    private static final long NEGATIVE_TTL_MILLIS = getEnvInt("ALBUM_CACHE_NEGATIVE_TTL_MS", 5000);
+
+    private static final ConcurrentMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private static final AtomicBoolean sweeping = new AtomicBoolean();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    private AlbumExistenceCache() {}
+
+    /**
+     * Looks up an album ID in the cache.
+     *
+     * @param albumId The album ID.
+     * @return TRUE if the album is known to exist, FALSE if it is known to be missing,
+     *         or null if the cache cannot answer and the database must be asked.
+     */
+    public static Boolean lookup(int albumId) {
+        Entry entry = entries.get(albumId);
+        if (entry != null) {
+            if (entry.expiry == NO_EXPIRY || entry.expiry > System.currentTimeMillis()) {
+                // Only write the bit when it changes, so hot entries do not bounce their cache line
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                hits.incrementAndGet();
+                return entry.expiry == NO_EXPIRY;
+            }
+            entries.remove(albumId, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public static void markExists(int albumId) {
+        entries.put(albumId, new Entry(NO_EXPIRY));
+        evictIfFull();
+    }
+
+    public static void markMissing(int albumId) {
+        // Never downgrade an album that is already known to exist
+        entries.merge(albumId, new Entry(System.currentTimeMillis() + NEGATIVE_TTL_MILLIS),
+                (oldEntry, newEntry) -> oldEntry.expiry == NO_EXPIRY ? oldEntry : newEntry);
+        evictIfFull();
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    public static long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public static int size() {
+        return entries.size();
+    }
+
+    private static void evictIfFull() {
+        // Inserts that race with a running sweep just go in; the bound is soft by a few entries
+        if (entries.size() <= MAX_SIZE || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            // The first pass clears every reference bit it passes, so a second pass always gets under the mark
+            for (int pass = 0; pass < 2 && entries.size() > LOW_WATER_SIZE; pass++) {
+                Iterator<Entry> it = entries.values().iterator();
+                while (it.hasNext() && entries.size() > LOW_WATER_SIZE) {
+                    Entry entry = it.next();
+                    if (entry.referenced && entry.expiry > now) {
+                        entry.referenced = false;
+                    } else {
+                        it.remove();
+                        evictions.incrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static class Entry {
+        // NO_EXPIRY marks an existing album, anything else is the expiry time of a negative entry in millis
+        private final long expiry;
+        private volatile boolean referenced;
+
+        Entry(long expiry) {
+            this.expiry = expiry;
+        }
+    }
+}
@@ -1,18 +1,27 @@
 package service;
 
 import dao.AlbumDAO;
+import imagestore.ImageStore;
 import model.Album;
+import util.ImageUploadBuffer;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 public class AlbumService {
     private AlbumDAO albumDAO;
+    private ImageStore imageStore;
 
     public AlbumService() {
         this.albumDAO = new AlbumDAO();
+        this.imageStore = ImageStore.fromEnv();
     }
 
     public Album getAlbum(int albumId) throws SQLException {
@@ -21,10 +30,124 @@ public class AlbumService {
         }
     }
 
-    public int createAlbum(Album album, InputStream inputStream, long imageSize) throws SQLException {
+    /**
+     * Checks whether an album exists, consulting the in-process existence cache before MySQL.
+     *
+     * @param albumId The album ID.
+     * @return true if the album exists, false otherwise.
+     */
+    public boolean albumExists(int albumId) throws SQLException {
+        Boolean cached = AlbumExistenceCache.lookup(albumId);
+        if (cached != null) {
+            return cached;
+        }
+        boolean exists;
+        try (Connection conn = DatabaseService.getConnection()) {
+            exists = albumDAO.albumExistsByKey(conn, albumId);
+        }
+        if (exists) {
+            AlbumExistenceCache.markExists(albumId);
+        } else {
+            AlbumExistenceCache.markMissing(albumId);
+        }
+        return exists;
+    }
+
+    /**
+     * Checks several albums at once. IDs the existence cache cannot answer are resolved with a single IN query.
+     *
+     * @param albumIds The album IDs.
+     * @return The IDs that exist, in the given order.
+     */
+    public List<Integer> filterExistingAlbums(List<Integer> albumIds) throws SQLException {
+        List<Integer> existing = new ArrayList<>(albumIds.size());
+        List<Integer> unknown = new ArrayList<>();
+        for (int albumId : albumIds) {
+            Boolean cached = AlbumExistenceCache.lookup(albumId);
+            if (cached == null) {
+                unknown.add(albumId);
+            } else if (cached) {
+                existing.add(albumId);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return existing;
+        }
+        Set<Integer> found;
         try (Connection conn = DatabaseService.getConnection()) {
-            return albumDAO.insertAlbum(conn, album, inputStream, imageSize);
+            found = albumDAO.findExistingAlbumIds(conn, unknown);
+        }
+        for (int albumId : unknown) {
+            if (found.contains(albumId)) {
+                AlbumExistenceCache.markExists(albumId);
+            } else {
+                AlbumExistenceCache.markMissing(albumId);
+            }
         }
+        // Keep the caller's order
+        Set<Integer> existingIds = new HashSet<>(existing);
+        existingIds.addAll(found);
+        existing.clear();
+        for (int albumId : albumIds) {
+            if (existingIds.contains(albumId)) {
+                existing.add(albumId);
+            }
+        }
+        return existing;
     }
 
+    public boolean writeAlbumImage(int albumId, OutputStream out) throws SQLException, IOException {
+        String imageKey;
+        try (Connection conn = DatabaseService.getConnection()) {
+            imageKey = albumDAO.getImageKey(conn, albumId);
+        }
+        return imageKey != null && imageStore.writeImage(imageKey, out);
+    }
+
+    /**
+     * Stores the image in the content-addressed image store, then inserts the album row referencing it.
+     *
+     * @return The generated album ID.
+     */
+    public int createAlbum(Album album, ImageUploadBuffer image) throws SQLException, IOException {
+        String imageKey = imageStore.store(image);
+        try (Connection conn = DatabaseService.getConnection()) {
+            int albumId = albumDAO.insertAlbum(conn, album, imageKey);
+            AlbumExistenceCache.markExists(albumId);
+            return albumId;
+        }
+    }
+
+    /**
+     * Stores the images, then inserts all album rows in one transaction.
+     * Images stored for a batch that fails to insert are left in place; they are keyed by content and
+     * will be reused if the batch is retried.
+     *
+     * @param albums The albums to create.
+     * @param images The image of each album, in the same order.
+     * @return The generated album IDs, in the same order as the albums.
+     */
+    public int[] createAlbums(List<Album> albums, List<ImageUploadBuffer> images) throws SQLException, IOException {
+        List<String> imageKeys = new ArrayList<>(images.size());
+        for (ImageUploadBuffer image : images) {
+            imageKeys.add(imageStore.store(image));
+        }
+        int[] albumIds;
+        try (Connection conn = DatabaseService.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                albumIds = albumDAO.insertAlbums(conn, albums, imageKeys);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+        for (int albumId : albumIds) {
+            AlbumExistenceCache.markExists(albumId);
+        }
+        return albumIds;
+    }
 }
@@ -0,0 +1,291 @@
+package service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces like/dislike increments in memory and writes them to Redis behind the request path.
+ * Increments land in one of several stripes chosen by album ID, so increments for different albums
+ * rarely contend whichever thread makes them, and are counted in primitive int-keyed tables, so
+ * recording one allocates nothing. A background thread swaps the stripes out on a short interval, sums the
+ * deltas per album and applies them to Redis in one script, so a hot album costs one HINCRBY
+ * per flush instead of one per request.
+ *
+ * Every flush carries an ID that Redis records when it applies the flush. A flush whose reply is
+ * lost is retried as is, under the same ID, until Redis acknowledges it, so increments are never
+ * counted twice. While a flush is unacknowledged, new increments keep collecting in the stripes
+ * with their original timestamps. The worst staleness seen is logged every LIKE_STALENESS_LOG_INTERVAL_MS.
+ */
+public class LikeCountAccumulator {
+    private static final int STRIPE_COUNT = 16;
+    private static final int LIKE = 0;
+    private static final int DISLIKE = 1;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final ReviewService reviewService;
+    private final long flushIntervalMillis;
+    private final long stalenessLogIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    // A flush sent to Redis but not acknowledged, retried before anything else; only the flusher writes it
+    private volatile Batch unacknowledged;
+    private volatile long lastFlushStalenessMillis;
+    // Only touched by the flusher
+    private long maxStalenessMillis;
+    private long failedFlushes;
+    private long lastStalenessLogMillis = System.currentTimeMillis();
+
+    public LikeCountAccumulator(ReviewService reviewService, long flushIntervalMillis) {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.reviewService = reviewService;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.stalenessLogIntervalMillis = getEnvInt("LIKE_STALENESS_LOG_INTERVAL_MS", 60000);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "like-count-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records one like or dislike for an album.
+     *
+     * @param albumId The album ID.
+     * @param like    true for a like, false for a dislike.
+     */
+    public void add(int albumId, boolean like) {
+        Stripe stripe = stripes[Math.floorMod(albumId, STRIPE_COUNT)];
+        synchronized (stripe) {
+            if (stripe.deltas.isEmpty()) {
+                stripe.oldestMillis = System.currentTimeMillis();
+            }
+            stripe.deltas.increment(albumId, like ? LIKE : DISLIKE);
+        }
+    }
+
+    /**
+     * Applies every pending increment to Redis. An unacknowledged flush is retried first, under its
+     * original ID; new increments are only taken out of the stripes once it has gone through.
+     */
+    public synchronized void flush() {
+        if (unacknowledged != null) {
+            if (!apply(unacknowledged)) {
+                logStaleness();
+                return;
+            }
+            unacknowledged = null;
+        }
+        Batch batch = takeStripes();
+        if (batch == null) {
+            lastFlushStalenessMillis = 0;
+        } else if (!apply(batch)) {
+            unacknowledged = batch;
+        }
+        logStaleness();
+    }
+
+    /**
+     * Sends a batch to Redis.
+     *
+     * @return true once Redis has acknowledged the batch, false if it has to be retried.
+     */
+    private boolean apply(Batch batch) {
+        try {
+            if (!reviewService.incrementAlbumLikesDislikesInCache(batch.id, batch.deltas)) {
+                System.out.println("Like counter flush " + batch.id + " was already applied, not applying it again");
+            }
+        } catch (Exception e) {
+            failedFlushes++;
+            System.out.println("Failed to flush " + batch.deltas.size() + " album counters to Redis, will retry");
+            e.printStackTrace();
+            return false;
+        }
+        lastFlushStalenessMillis = System.currentTimeMillis() - batch.oldestMillis;
+        maxStalenessMillis = Math.max(maxStalenessMillis, lastFlushStalenessMillis);
+        return true;
+    }
+
+    /**
+     * Swaps out every stripe and merges their deltas.
+     *
+     * @return The merged batch, or null if nothing was pending.
+     */
+    private Batch takeStripes() {
+        Map<String, int[]> merged = new HashMap<>();
+        long oldestMillis = Long.MAX_VALUE;
+        for (Stripe stripe : stripes) {
+            DeltaTable deltas;
+            synchronized (stripe) {
+                if (stripe.deltas.isEmpty()) {
+                    continue;
+                }
+                deltas = stripe.deltas;
+                stripe.deltas = new DeltaTable();
+                oldestMillis = Math.min(oldestMillis, stripe.oldestMillis);
+            }
+            // Stripes are chosen by album ID, so every album is in exactly one of them
+            deltas.copyTo(merged);
+        }
+        return merged.isEmpty() ? null : new Batch(UUID.randomUUID().toString(), merged, oldestMillis);
+    }
+
+    private void logStaleness() {
+        long now = System.currentTimeMillis();
+        if (now - lastStalenessLogMillis < stalenessLogIntervalMillis) {
+            return;
+        }
+        maxStalenessMillis = Math.max(maxStalenessMillis, getPendingStalenessMillis());
+        System.out.println("Like counters: max staleness " + maxStalenessMillis + "ms, "
+                + failedFlushes + " failed flushes in the last " + (now - lastStalenessLogMillis) + "ms");
+        maxStalenessMillis = 0;
+        failedFlushes = 0;
+        lastStalenessLogMillis = now;
+    }
+
+    /**
+     * Returns how long the oldest increment applied by the last flush had been waiting, in milliseconds.
+     */
+    public long getLastFlushStalenessMillis() {
+        return lastFlushStalenessMillis;
+    }
+
+    /**
+     * Returns how long the oldest increment still waiting to be flushed has been pending, or 0 if none are.
+     */
+    public long getPendingStalenessMillis() {
+        Batch batch = unacknowledged;
+        long oldestMillis = batch == null ? Long.MAX_VALUE : batch.oldestMillis;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (!stripe.deltas.isEmpty()) {
+                    oldestMillis = Math.min(oldestMillis, stripe.oldestMillis);
+                }
+            }
+        }
+        return oldestMillis == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldestMillis;
+    }
+
+    /**
+     * Stops the background flusher and flushes whatever is still pending.
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(flushIntervalMillis * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static class Batch {
+        private final String id;
+        private final Map<String, int[]> deltas;
+        private final long oldestMillis;
+
+        Batch(String id, Map<String, int[]> deltas, long oldestMillis) {
+            this.id = id;
+            this.deltas = deltas;
+            this.oldestMillis = oldestMillis;
+        }
+    }
+
+    private static class Stripe {
+        private DeltaTable deltas = new DeltaTable();
+        private long oldestMillis;
+    }
+
+    /**
+     * Open-addressing table from album ID to {likes, dislikes}, kept in parallel primitive arrays.
+     * Album IDs are auto-increment keys, so they are never negative and -1 marks an empty slot.
+     */
+    private static class DeltaTable {
+        private static final int EMPTY = -1;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] albumIds = newKeys(INITIAL_CAPACITY);
+        private int[] counts = new int[INITIAL_CAPACITY * 2];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void increment(int albumId, int kind) {
+            int mask = albumIds.length - 1;
+            int slot = mix(albumId) & mask;
+            while (albumIds[slot] != albumId) {
+                if (albumIds[slot] == EMPTY) {
+                    if ((size + 1) * 2 > albumIds.length) {
+                        grow();
+                        increment(albumId, kind);
+                        return;
+                    }
+                    albumIds[slot] = albumId;
+                    size++;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            counts[slot * 2 + kind]++;
+        }
+
+        /**
+         * Copies the counts into a map keyed by the album ID string that Redis uses.
+         */
+        void copyTo(Map<String, int[]> target) {
+            for (int slot = 0; slot < albumIds.length; slot++) {
+                if (albumIds[slot] != EMPTY) {
+                    target.put(String.valueOf(albumIds[slot]), new int[]{counts[slot * 2 + LIKE], counts[slot * 2 + DISLIKE]});
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldIds = albumIds;
+            int[] oldCounts = counts;
+            albumIds = newKeys(oldIds.length * 2);
+            counts = new int[oldCounts.length * 2];
+            int mask = albumIds.length - 1;
+            for (int oldSlot = 0; oldSlot < oldIds.length; oldSlot++) {
+                if (oldIds[oldSlot] == EMPTY) {
+                    continue;
+                }
+                int slot = mix(oldIds[oldSlot]) & mask;
+                while (albumIds[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                albumIds[slot] = oldIds[oldSlot];
+                counts[slot * 2 + LIKE] = oldCounts[oldSlot * 2 + LIKE];
+                counts[slot * 2 + DISLIKE] = oldCounts[oldSlot * 2 + DISLIKE];
+            }
+        }
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        // Albums sharing a stripe have IDs that are equal modulo STRIPE_COUNT, so spread the high bits down
+        private static int mix(int albumId) {
+            int h = albumId * 0x9e3779b9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
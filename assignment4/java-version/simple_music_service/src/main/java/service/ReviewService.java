@@ -1,14 +1,41 @@
 package service;
 
 import dao.ReviewDAO;
+import dto.Likes;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisException;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 public class ReviewService {
+    // Cache fills in progress, shared by every ReviewService so that only one load per album runs at a time
+    private static final ConcurrentMap<String, CompletableFuture<Likes>> inFlightLoads = new ConcurrentHashMap<>();
+    private static final String FLUSH_MARKER_PREFIX = "likeflush:";
+    // Retries happen within a few flush intervals, so the markers only need to outlive those
+    private static final int FLUSH_MARKER_TTL_SECONDS = 3600;
+    // KEYS[1] is the flush marker, KEYS[i] for i >= 2 an album; ARGV[1] is the marker TTL and
+    // ARGV[2i-2], ARGV[2i-1] are the likes and dislikes to add to KEYS[i]
+    private static final String INCREMENT_ONCE_SCRIPT =
+            "if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[1]) then return 0 end\n"
+            + "for i = 2, #KEYS do\n"
+            + "  local likes = tonumber(ARGV[2 * i - 2])\n"
+            + "  local dislikes = tonumber(ARGV[2 * i - 1])\n"
+            + "  if likes ~= 0 then redis.call('HINCRBY', KEYS[i], 'like', likes) end\n"
+            + "  if dislikes ~= 0 then redis.call('HINCRBY', KEYS[i], 'dislike', dislikes) end\n"
+            + "end\n"
+            + "return 1";
     private ReviewDAO reviewDAO;
 
     public ReviewService() {
@@ -24,32 +51,188 @@ public class ReviewService {
         }
     }
 
-    public void updateAlbumLikesDislikesInCache(String albumId, String likeOrNot, int amount) {
+    /**
+     * Initializes the counters of several new albums with one pipeline.
+     */
+    public void initializeAlbumLikesDislikesInCache(int[] albumIds) {
         try (Jedis jedis = RedisService.getJedis()) {
-            jedis.hincrBy(albumId, likeOrNot, amount);
+            Pipeline pipeline = jedis.pipelined();
+            for (int albumId : albumIds) {
+                String key = String.valueOf(albumId);
+                pipeline.hsetnx(key, "like", "0");
+                pipeline.hsetnx(key, "dislike", "0");
+            }
+            pipeline.sync();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    public int getAlbumLikesDislikes(String albumId, String likeOrNot) throws SQLException {
+    /**
+     * Applies coalesced counter deltas to Redis in one atomic script, at most once per flush ID.
+     * The script sets a marker key for the flush before incrementing, so retrying a flush whose
+     * reply was lost cannot count its increments twice.
+     *
+     * @param flushId A unique ID for this set of deltas, reused when the same deltas are retried.
+     * @param deltas  albumId -> {likes, dislikes} to add.
+     * @return true if the deltas were applied now, false if this flush ID had already been applied.
+     * @throws JedisException if Redis cannot be reached; the caller decides whether to retry.
+     */
+    public boolean incrementAlbumLikesDislikesInCache(String flushId, Map<String, int[]> deltas) {
+        List<String> keys = new ArrayList<>(deltas.size() + 1);
+        List<String> args = new ArrayList<>(deltas.size() * 2 + 1);
+        keys.add(FLUSH_MARKER_PREFIX + flushId);
+        args.add(String.valueOf(FLUSH_MARKER_TTL_SECONDS));
+        for (Map.Entry<String, int[]> entry : deltas.entrySet()) {
+            keys.add(entry.getKey());
+            args.add(String.valueOf(entry.getValue()[0]));
+            args.add(String.valueOf(entry.getValue()[1]));
+        }
+        try (Jedis jedis = RedisService.getJedis()) {
+            Object applied = jedis.eval(INCREMENT_ONCE_SCRIPT, keys, args);
+            return Long.valueOf(1).equals(applied);
+        }
+    }
+
+    /**
+     * Reads both counters of an album with a single HMGET. On a cache miss only one thread per album
+     * loads the counts from MySQL and fills Redis; concurrent readers of the same album wait for its result.
+     *
+     * @param albumId The album ID.
+     * @return The album's likes and dislikes.
+     */
+    public Likes getAlbumLikes(String albumId) throws SQLException {
         try (Jedis jedis = RedisService.getJedis()) {
-            String count = jedis.hget(albumId, likeOrNot);
-            if (count != null) {
-                return Integer.parseInt(count);
-            } else {
-                // If not found in Redis, search Database
-                try (Connection conn = DatabaseService.getConnection()) {
-                    Map<String, Integer> likesDislikes = reviewDAO.getLikesDislikesForAlbum(conn, Integer.parseInt(albumId));
-                    jedis.hset(albumId, "like", likesDislikes.get("likes").toString());
-                    jedis.hset(albumId, "dislike", likesDislikes.get("dislikes").toString());
-                    return likesDislikes.get(likeOrNot);
+            List<String> counts = jedis.hmget(albumId, "like", "dislike");
+            if (counts.get(0) != null && counts.get(1) != null) {
+                return new Likes(Integer.parseInt(counts.get(0)), Integer.parseInt(counts.get(1)));
+            }
+        } catch (JedisException e) {
+            System.out.println("Error in Redis operation, reading likes from database");
+            e.printStackTrace();
+            return loadLikesFromDatabase(albumId);
+        }
+        return loadAndCacheLikes(albumId);
+    }
+
+    /**
+     * Reads the counters of several albums with one pipelined HMGET round trip. Albums missing from Redis
+     * are loaded with one MySQL query and written back with one pipeline. If Redis fails, all counts come
+     * from MySQL.
+     *
+     * @param albumIds The album IDs, all known to exist.
+     * @return albumId -> likes, in the given order.
+     */
+    public Map<Integer, Likes> getAlbumsLikes(List<Integer> albumIds) throws SQLException {
+        Map<Integer, Likes> result = new LinkedHashMap<>();
+        if (albumIds.isEmpty()) {
+            return result;
+        }
+        List<Integer> misses = new ArrayList<>();
+        try (Jedis jedis = RedisService.getJedis()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<List<String>>> responses = new ArrayList<>(albumIds.size());
+            for (int albumId : albumIds) {
+                responses.add(pipeline.hmget(String.valueOf(albumId), "like", "dislike"));
+            }
+            pipeline.sync();
+            for (int i = 0; i < albumIds.size(); i++) {
+                List<String> counts = responses.get(i).get();
+                if (counts.get(0) != null && counts.get(1) != null) {
+                    result.put(albumIds.get(i), new Likes(Integer.parseInt(counts.get(0)), Integer.parseInt(counts.get(1))));
+                } else {
+                    result.put(albumIds.get(i), null);
+                    misses.add(albumIds.get(i));
                 }
             }
+        } catch (JedisException e) {
+            System.out.println("Error in Redis operation, reading likes from database");
+            e.printStackTrace();
+            Map<Integer, int[]> counts;
+            try (Connection conn = DatabaseService.getConnection()) {
+                counts = reviewDAO.getLikesDislikesForAlbums(conn, albumIds);
+            }
+            result.clear();
+            for (int albumId : albumIds) {
+                int[] count = counts.getOrDefault(albumId, new int[2]);
+                result.put(albumId, new Likes(count[0], count[1]));
+            }
+            return result;
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+
+        Map<Integer, int[]> counts;
+        try (Connection conn = DatabaseService.getConnection()) {
+            counts = reviewDAO.getLikesDislikesForAlbums(conn, misses);
+        }
+        for (int albumId : misses) {
+            int[] count = counts.getOrDefault(albumId, new int[2]);
+            result.put(albumId, new Likes(count[0], count[1]));
+        }
+        try (Jedis jedis = RedisService.getJedis()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (int albumId : misses) {
+                Likes likes = result.get(albumId);
+                Map<String, String> fields = new HashMap<>();
+                fields.put("like", String.valueOf(likes.getLikes()));
+                fields.put("dislike", String.valueOf(likes.getDislikes()));
+                pipeline.hset(String.valueOf(albumId), fields);
+            }
+            pipeline.sync();
         } catch (JedisException e) {
             System.out.println("Error in Redis operation");
             e.printStackTrace();
-            return -1;
+        }
+        return result;
+    }
+
+    private Likes loadAndCacheLikes(String albumId) throws SQLException {
+        CompletableFuture<Likes> load = new CompletableFuture<>();
+        CompletableFuture<Likes> inFlight = inFlightLoads.putIfAbsent(albumId, load);
+        if (inFlight != null) {
+            return awaitLoad(inFlight);
+        }
+        try {
+            Likes likes = loadLikesFromDatabase(albumId);
+            Map<String, String> fields = new HashMap<>();
+            fields.put("like", String.valueOf(likes.getLikes()));
+            fields.put("dislike", String.valueOf(likes.getDislikes()));
+            try (Jedis jedis = RedisService.getJedis()) {
+                jedis.hset(albumId, fields);
+            } catch (JedisException e) {
+                System.out.println("Error in Redis operation");
+                e.printStackTrace();
+            }
+            load.complete(likes);
+            return likes;
+        } catch (SQLException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightLoads.remove(albumId, load);
+        }
+    }
+
+    private Likes awaitLoad(CompletableFuture<Likes> load) throws SQLException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for likes to load", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to load likes", e.getCause());
+        }
+    }
+
+    private Likes loadLikesFromDatabase(String albumId) throws SQLException {
+        try (Connection conn = DatabaseService.getConnection()) {
+            Map<String, Integer> likesDislikes = reviewDAO.getLikesDislikesForAlbum(conn, Integer.parseInt(albumId));
+            return new Likes(likesDislikes.get("likes"), likesDislikes.get("dislikes"));
         }
     }
 
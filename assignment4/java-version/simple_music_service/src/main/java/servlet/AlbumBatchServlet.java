@@ -0,0 +1,126 @@
+package servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import dto.AlbumProfile;
+import dto.ImageMetaData;
+import mapper.AlbumMapper;
+import model.Album;
+import service.AlbumService;
+import service.ReviewService;
+import util.ImageUploadBuffer;
+import util.JsonResponseWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates many albums from one multipart request, for catalog imports.
+ * The request carries numbered part pairs profile0/image0, profile1/image1, ... in the same format as
+ * POST /albums. All albums are inserted in one transaction and their like counters are initialized with
+ * one Redis pipeline. The response is a JSON array with the albumID and imageSize of each album, in
+ * request order.
+ */
+@WebServlet(name = "Servlet.AlbumBatchServlet", value = "/albums/batch")
+@MultipartConfig(fileSizeThreshold = ImageUploadBuffer.MEMORY_THRESHOLD)
+public class AlbumBatchServlet extends HttpServlet {
+    private static final byte[] MISSING_PROFILE = JsonResponseWriter.errorBody("Missing album profile");
+    private static final byte[] TOO_MANY_ALBUMS = JsonResponseWriter.errorBody("Too many albums in one batch");
+    private static final byte[] SAVE_ALBUMS_FAILED = JsonResponseWriter.errorBody("Failed to save albums and images");
+
+    private AlbumService albumService;
+    private ReviewService reviewService;
+    private Gson gson;
+    private AlbumMapper albumMapper;
+    private int maxBatchSize;
+
+    @Override
+    public void init() {
+        albumMapper = AlbumMapper.INSTANCE;
+        albumService = new AlbumService();
+        reviewService = new ReviewService();
+        gson = new Gson();
+        String maxBatchSizeValue = System.getenv("ALBUM_BATCH_MAX_SIZE");
+        maxBatchSize = maxBatchSizeValue == null ? 100 : Integer.parseInt(maxBatchSizeValue);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        List<Album> albums = new ArrayList<>();
+        List<ImageUploadBuffer> images = new ArrayList<>();
+        try {
+            for (int i = 0; ; i++) {
+                Part profilePart = req.getPart("profile" + i);
+                if (profilePart == null) {
+                    break;
+                }
+                if (i == maxBatchSize) {
+                    res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    JsonResponseWriter.writeBody(res, TOO_MANY_ALBUMS);
+                    return;
+                }
+                AlbumProfile albumProfile = parseProfile(profilePart);
+                if (albumProfile == null || albumProfile.getArtist() == null || albumProfile.getTitle() == null || albumProfile.getYear() == null) {
+                    res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    JsonResponseWriter.writeError(res, "Invalid album profile " + i);
+                    return;
+                }
+                Part imagePart = req.getPart("image" + i);
+                if (imagePart == null) {
+                    res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    JsonResponseWriter.writeError(res, "Missing image data " + i);
+                    return;
+                }
+                albums.add(albumMapper.albumProfileToAlbum(albumProfile));
+                // Each image is hashed and stored straight from where the container put it
+                images.add(ImageUploadBuffer.fromPart(imagePart));
+            }
+            if (albums.isEmpty()) {
+                res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                JsonResponseWriter.writeBody(res, MISSING_PROFILE);
+                return;
+            }
+
+            int[] albumIds;
+            try {
+                albumIds = albumService.createAlbums(albums, images);
+            } catch (IOException | SQLException e) {
+                e.printStackTrace();
+                res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                JsonResponseWriter.writeBody(res, SAVE_ALBUMS_FAILED);
+                return;
+            }
+            // Initialize {albumId, like: 0, dislike: 0} in Redis for the whole batch
+            reviewService.initializeAlbumLikesDislikesInCache(albumIds);
+
+            List<ImageMetaData> responseData = new ArrayList<>(albumIds.length);
+            for (int i = 0; i < albumIds.length; i++) {
+                responseData.add(new ImageMetaData(String.valueOf(albumIds[i]), String.valueOf(images.get(i).getSize())));
+            }
+            JsonResponseWriter.writeImageMetaDataList(res, responseData);
+        } finally {
+            for (ImageUploadBuffer image : images) {
+                image.close();
+            }
+        }
+    }
+
+    private AlbumProfile parseProfile(Part profilePart) throws IOException {
+        try (InputStream in = profilePart.getInputStream()) {
+            return gson.fromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8), AlbumProfile.class);
+        } catch (JsonSyntaxException e) {
+            return null;
+        }
+    }
+}
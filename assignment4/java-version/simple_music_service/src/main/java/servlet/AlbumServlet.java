@@ -3,12 +3,10 @@ package servlet;
 import com.google.gson.Gson;
 import dto.AlbumInfo;
 import dto.AlbumProfile;
-import dto.ErrorMsg;
 import javax.servlet.*;
 import javax.servlet.http.*;
 import javax.servlet.annotation.*;
 import java.io.IOException;
-import java.io.InputStream;
 import java.sql.SQLException;
 
 import dto.ImageMetaData;
@@ -16,10 +14,25 @@ import mapper.AlbumMapper;
 import model.Album;
 import service.AlbumService;
 import service.ReviewService;
+import util.ImageUploadBuffer;
+import util.JsonResponseWriter;
+import util.PathRoute;
 
 @WebServlet(name = "Servlet.AlbumServlet", value = "/albums")
-@MultipartConfig
+// Images up to the threshold stay in memory, larger ones in the container's temp file, and are read from there
+@MultipartConfig(fileSizeThreshold = ImageUploadBuffer.MEMORY_THRESHOLD)
 public class AlbumServlet extends HttpServlet {
+    private static final byte[] MISSING_PARAMETERS = JsonResponseWriter.errorBody("missing parameters");
+    private static final byte[] INVALID_URL = JsonResponseWriter.errorBody("invalid URL format");
+    private static final byte[] INVALID_ALBUM_ID = JsonResponseWriter.errorBody("invalid album ID");
+    private static final byte[] GET_ALBUM_FAILED = JsonResponseWriter.errorBody("Failed to get album");
+    private static final byte[] GET_IMAGE_FAILED = JsonResponseWriter.errorBody("Failed to get album image");
+    private static final byte[] ALBUM_NOT_FOUND = JsonResponseWriter.errorBody("album not found");
+    private static final byte[] MISSING_PROFILE = JsonResponseWriter.errorBody("Missing album profile");
+    private static final byte[] INVALID_PROFILE = JsonResponseWriter.errorBody("Invalid album profile");
+    private static final byte[] MISSING_IMAGE = JsonResponseWriter.errorBody("Missing image data");
+    private static final byte[] SAVE_ALBUM_FAILED = JsonResponseWriter.errorBody("Failed to save album and image");
+
     private AlbumService albumService;
     private ReviewService reviewService;
     private Gson gson;
@@ -35,58 +48,75 @@ public class AlbumServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-        String urlPath = req.getPathInfo();
-
-        // Check if we have a URL path
-        if (urlPath == null || urlPath.isEmpty()) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ErrorMsg noParameterError = new ErrorMsg("missing parameters");
-            res.getWriter().write(gson.toJson(noParameterError));
+        PathRoute route = PathRoute.parseAlbumResource(req.getPathInfo());
+        if (!route.isValid()) {
+            writeRouteError(res, route.getError());
+            return;
+        }
+        int albumId = route.getAlbumId();
+        if (route.isImage()) {
+            writeAlbumImage(res, albumId);
+            return;
+        }
+        res.setStatus(HttpServletResponse.SC_OK);
+        // Retrieve album data using the provided ID in the URL
+        Album album = null;
+        try {
+            album = albumService.getAlbum(albumId);
+        } catch (SQLException e) {
+            res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonResponseWriter.writeBody(res, GET_ALBUM_FAILED);
+            e.printStackTrace();
             return;
         }
-        String[] urlParts = urlPath.split("/");
+        if (album == null) {
+            res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            JsonResponseWriter.writeBody(res, ALBUM_NOT_FOUND);
+            return;
+        }
+        AlbumInfo albumInfo = albumMapper.albumToAlbumInfo(album);
+        JsonResponseWriter.writeAlbumInfo(res, albumInfo);
+    }
 
-        // Validate URL path and return the appropriate response
-        if (!isUrlValid(urlParts)) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ErrorMsg invalidUrlError = new ErrorMsg("invalid URL format");
-            res.getWriter().write(gson.toJson(invalidUrlError));
-        } else {
-            res.setStatus(HttpServletResponse.SC_OK);
-            // Retrieve album data using the provided ID in the URL
-            int albumId = Integer.parseInt(urlParts[1]);
-            Album album = null;
-            try {
-                album = albumService.getAlbum(albumId);
-            } catch (SQLException e) {
+    /**
+     * Streams the album's image into the response without buffering it. The metadata columns are
+     * never read; only the image key is looked up on the album row.
+     */
+    private void writeAlbumImage(HttpServletResponse res, int albumId) throws IOException {
+        res.setStatus(HttpServletResponse.SC_OK);
+        res.setContentType("application/octet-stream");
+        boolean found;
+        try {
+            found = albumService.writeAlbumImage(albumId, res.getOutputStream());
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            if (!res.isCommitted()) {
+                res.reset();
                 res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                res.getWriter().write(gson.toJson(new ErrorMsg("Failed to get album")));
-                e.printStackTrace();
-            }
-            if (album == null) {
-                res.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                res.getWriter().write(gson.toJson(new ErrorMsg("album not found")));
-                return;
+                JsonResponseWriter.writeBody(res, GET_IMAGE_FAILED);
             }
-            AlbumInfo albumInfo = albumMapper.albumToAlbumInfo(album);
-            String albumJson = gson.toJson(albumInfo);
-
-            res.setContentType("application/json");
-            res.setCharacterEncoding("UTF-8");
-            res.getWriter().write(albumJson);
+            return;
+        }
+        if (!found) {
+            // Nothing was written yet, so the image headers can still be replaced
+            res.reset();
+            res.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            JsonResponseWriter.writeBody(res, ALBUM_NOT_FOUND);
         }
     }
 
-    /**
-     * Validates the URL format.
-     *
-     * @param urlPath An array of URL segments.
-     * @return true if the URL is valid, false otherwise.
-     */
-    private boolean isUrlValid(String[] urlPath) {
-        // urlPath  = "/123"
-        // urlParts = [, 123]
-        return urlPath.length == 2 && "".equals(urlPath[0]);
+    private void writeRouteError(HttpServletResponse res, PathRoute.Error error) throws IOException {
+        res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        switch (error) {
+            case MISSING:
+                JsonResponseWriter.writeBody(res, MISSING_PARAMETERS);
+                break;
+            case INVALID_ID:
+                JsonResponseWriter.writeBody(res, INVALID_ALBUM_ID);
+                break;
+            default:
+                JsonResponseWriter.writeBody(res, INVALID_URL);
+        }
     }
 
     @Override
@@ -94,14 +124,14 @@ public class AlbumServlet extends HttpServlet {
         Part profilePart = req.getPart("profile");
         if (profilePart == null) {
             res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Missing album profile")));
+            JsonResponseWriter.writeBody(res, MISSING_PROFILE);
             return;
         }
         String profileJson = new String(profilePart.getInputStream().readAllBytes());
         AlbumProfile albumProfile = gson.fromJson(profileJson, AlbumProfile.class);
         if (albumProfile == null || albumProfile.getArtist() == null || albumProfile.getTitle() == null || albumProfile.getYear() == null) {
             res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Invalid album profile")));
+            JsonResponseWriter.writeBody(res, INVALID_PROFILE);
             return;
         }
         Album newAlbum = albumMapper.albumProfileToAlbum(albumProfile);
@@ -110,17 +140,19 @@ public class AlbumServlet extends HttpServlet {
         Part imagePart = req.getPart("image");
         if (imagePart == null) {
             res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Missing image data")));
+            JsonResponseWriter.writeBody(res, MISSING_IMAGE);
             return;
         }
-        long imageSize = imagePart.getSize();
+        long imageSize;
         int albumId = -1;
-        try (InputStream imageInputStream = imagePart.getInputStream()) {
-            albumId = albumService.createAlbum(newAlbum, imageInputStream, imageSize);
+        // The image is hashed and stored straight from where the container put it, without another copy
+        try (ImageUploadBuffer imageBuffer = ImageUploadBuffer.fromPart(imagePart)) {
+            imageSize = imageBuffer.getSize();
+            albumId = albumService.createAlbum(newAlbum, imageBuffer);
         } catch (IOException | SQLException e) {
             e.printStackTrace();
             res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Failed to save album and image")));
+            JsonResponseWriter.writeBody(res, SAVE_ALBUM_FAILED);
             return;
         }
         // Initialize {albumId, like: 0, dislike: 0} in Redis
@@ -128,7 +160,7 @@ public class AlbumServlet extends HttpServlet {
         // Create a response
         ImageMetaData responseData = new ImageMetaData(String.valueOf(albumId), String.valueOf(imageSize));
         // Send the response back as JSON
-        res.getWriter().write(gson.toJson(responseData));
+        JsonResponseWriter.writeImageMetaData(res, responseData);
     }
 }
 
@@ -0,0 +1,93 @@
+package servlet;
+
+import dto.AlbumLikes;
+import dto.Likes;
+import service.AlbumService;
+import service.ReviewService;
+import util.JsonResponseWriter;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Returns the likes and dislikes of many albums in one request: GET /review/batch?albumIds=1,2,3.
+ * Existence is resolved from the album cache and one IN query, counts with one pipelined Redis round
+ * trip, and Redis misses with one AlbumStats query. The response is a JSON array of
+ * {albumID, likes, dislikes} in request order; albums that do not exist are left out.
+ */
+@WebServlet(name = "Servlet.LikesBatchServlet", value = "/review/batch")
+public class LikesBatchServlet extends HttpServlet {
+    private static final byte[] MISSING_PARAMETERS = JsonResponseWriter.errorBody("Missing parameters");
+    private static final byte[] INVALID_ALBUM_ID = JsonResponseWriter.errorBody("Invalid album ID");
+    private static final byte[] TOO_MANY_ALBUMS = JsonResponseWriter.errorBody("Too many albums in one request");
+    private static final byte[] GET_LIKES_FAILED = JsonResponseWriter.errorBody("Failed to get album likes/dislikes");
+
+    private AlbumService albumService;
+    private ReviewService reviewService;
+    private int maxBatchSize;
+
+    @Override
+    public void init() {
+        albumService = new AlbumService();
+        reviewService = new ReviewService();
+        String maxBatchSizeValue = System.getenv("LIKES_BATCH_MAX_SIZE");
+        maxBatchSize = maxBatchSizeValue == null ? 500 : Integer.parseInt(maxBatchSizeValue);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+        String albumIdsParam = req.getParameter("albumIds");
+        if (albumIdsParam == null || albumIdsParam.isEmpty()) {
+            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonResponseWriter.writeBody(res, MISSING_PARAMETERS);
+            return;
+        }
+        // Duplicates are looked up once
+        Set<Integer> albumIds = new LinkedHashSet<>();
+        try {
+            for (String albumId : albumIdsParam.split(",")) {
+                int id = Integer.parseInt(albumId.trim());
+                if (id < 0) {
+                    throw new NumberFormatException(albumId);
+                }
+                albumIds.add(id);
+            }
+        } catch (NumberFormatException e) {
+            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonResponseWriter.writeBody(res, INVALID_ALBUM_ID);
+            return;
+        }
+        if (albumIds.size() > maxBatchSize) {
+            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonResponseWriter.writeBody(res, TOO_MANY_ALBUMS);
+            return;
+        }
+
+        List<AlbumLikes> responseData;
+        try {
+            List<Integer> existing = albumService.filterExistingAlbums(new ArrayList<>(albumIds));
+            Map<Integer, Likes> likes = reviewService.getAlbumsLikes(existing);
+            responseData = new ArrayList<>(likes.size());
+            for (Map.Entry<Integer, Likes> entry : likes.entrySet()) {
+                responseData.add(new AlbumLikes(String.valueOf(entry.getKey()),
+                        entry.getValue().getLikes(), entry.getValue().getDislikes()));
+            }
+        } catch (SQLException e) {
+            res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonResponseWriter.writeBody(res, GET_LIKES_FAILED);
+            e.printStackTrace();
+            return;
+        }
+        res.setStatus(HttpServletResponse.SC_OK);
+        JsonResponseWriter.writeAlbumLikesList(res, responseData);
+    }
+}
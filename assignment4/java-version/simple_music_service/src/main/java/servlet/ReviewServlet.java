@@ -1,43 +1,105 @@
 package servlet;
-import com.google.gson.Gson;
-import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Connection;
-import dto.ErrorMsg;
 import dto.Likes;
+import publisher.ReviewPublisher;
 import rmqpool.RMQChannelFactory;
 import rmqpool.RMQChannelPool;
 import service.AlbumService;
+import service.LikeCountAccumulator;
 import service.ReviewService;
+import util.JsonResponseWriter;
+import util.PathRoute;
+import util.ReviewMessageCodec;
+import util.UUIDUtil;
 
 import javax.servlet.*;
 import javax.servlet.http.*;
-import javax.servlet.annotation.*;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-@WebServlet(name = "Servlet.ReviewServlet", value = "/review")
+/**
+ * Handles /review/*. It is registered only in web.xml, with async support: an annotation would
+ * register a second instance (with its own RabbitMQ connection and publisher) on the bare /review path.
+ */
 public class ReviewServlet extends HttpServlet {
+    private static final byte[] MISSING_PARAMETERS = JsonResponseWriter.errorBody("Missing parameters");
+    private static final byte[] INVALID_URL = JsonResponseWriter.errorBody("Invalid URL format");
+    private static final byte[] INVALID_ALBUM_ID = JsonResponseWriter.errorBody("Invalid album ID");
+    private static final byte[] ALBUM_NOT_FOUND = JsonResponseWriter.errorBody("Album not found");
+    private static final byte[] GET_LIKES_FAILED = JsonResponseWriter.errorBody("Failed to get album likes/dislikes");
+    private static final byte[] INTERNAL_ERROR = JsonResponseWriter.errorBody("Internal server error");
+    private static final byte[] CHECK_ALBUM_FAILED = JsonResponseWriter.errorBody("Failed to check AlbumId");
+    private static final byte[] SERVER_BUSY = JsonResponseWriter.errorBody("Server is busy, retry later");
+    private static final byte[] QUEUE_BUSY = JsonResponseWriter.errorBody("Review queue is busy, retry later");
+    private static final byte[] CONFIRM_TIMEOUT = JsonResponseWriter.errorBody("Review was not confirmed in time, retry later");
+    private static final byte[] PUBLISH_FAILED = JsonResponseWriter.errorBody("Failed to publish review");
+
     private Connection connection;
     private AlbumService albumService;
     private ReviewService reviewService;
-    private Gson gson;
     private RMQChannelPool channelPool;
+    private LikeCountAccumulator likeCountAccumulator;
+    private ReviewPublisher reviewPublisher;
+    private long confirmTimeoutMillis;
+    private boolean legacyMessageFormat;
+    // Writes responses for parked POST requests; nothing on it blocks
+    private ExecutorService reviewExecutor;
+    // Runs the album existence check, which may hit MySQL, for POST requests
+    private ExecutorService albumCheckExecutor;
+    private long asyncTimeoutMillis;
+    private final AtomicBoolean syncFallbackLogged = new AtomicBoolean();
 
     @Override
     public void init() throws ServletException {
         super.init();
-        gson = new Gson();
         albumService = new AlbumService();
         reviewService = new ReviewService();
+        likeCountAccumulator = new LikeCountAccumulator(reviewService, getEnvInt("LIKE_FLUSH_INTERVAL_MS", 100));
+        likeCountAccumulator.start();
         ConnectionFactory factory = new ConnectionFactory();
         factory.setHost(System.getenv("RABBITMQ_ADDRESS"));
         try {
             connection = factory.newConnection();
             RMQChannelFactory channelFactory = new RMQChannelFactory(connection);
-            int poolSize = 30;
-            channelPool = new RMQChannelPool(poolSize, channelFactory);
+            // Requests never borrow channels; the publisher holds one at a time and replaces it through the pool
+            channelPool = new RMQChannelPool(1, getEnvInt("RMQ_CHANNEL_BORROW_TIMEOUT_MS", 5000), channelFactory);
+            reviewPublisher = new ReviewPublisher(channelPool,
+                    getEnvInt("PUBLISH_MAX_OUTSTANDING", 10000),
+                    getEnvInt("PUBLISH_BATCH_SIZE", 100));
+            reviewPublisher.start();
+            confirmTimeoutMillis = getEnvInt("PUBLISH_CONFIRM_TIMEOUT_MS", 5000);
+            legacyMessageFormat = "csv".equalsIgnoreCase(System.getenv("REVIEW_MESSAGE_FORMAT"));
+            asyncTimeoutMillis = getEnvInt("REVIEW_ASYNC_TIMEOUT_MS", 30000);
+            AtomicInteger threadCount = new AtomicInteger();
+            reviewExecutor = Executors.newFixedThreadPool(
+                    getEnvInt("REVIEW_ASYNC_THREADS", Runtime.getRuntime().availableProcessors()), r -> {
+                        Thread thread = new Thread(r, "review-async-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // Sized like the Hikari pool: more threads would only queue for a connection
+            int albumCheckThreads = getEnvInt("MAXIMUM_CONN_POOL_SIZE", 10);
+            AtomicInteger albumCheckThreadCount = new AtomicInteger();
+            albumCheckExecutor = new ThreadPoolExecutor(albumCheckThreads, albumCheckThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(getEnvInt("ALBUM_CHECK_QUEUE_SIZE", 10000)), r -> {
+                        Thread thread = new Thread(r, "review-album-check-" + albumCheckThreadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
         } catch (IOException | TimeoutException e) {
             throw new ServletException("Failed to create connection or channel pool", e);
         }
@@ -45,138 +107,241 @@ public class ReviewServlet extends HttpServlet {
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
-        String urlPath = req.getPathInfo();
-
-        // Check if we have a URL path
-        if (urlPath == null || urlPath.isEmpty()) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Missing parameters")));
-            return;
-        }
-
-        String[] urlParts = urlPath.split("/");
-
-        // Validate URL path and return the appropriate response
-        if (!isGetUrlValid(urlParts)) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Invalid URL format")));
+        PathRoute route = PathRoute.parseAlbum(req.getPathInfo());
+        if (!route.isValid()) {
+            writeRouteError(res, route.getError());
             return;
         }
-
-        String albumId = urlParts[1];
+        int albumId = route.getAlbumId();
 
         try {
             if (!albumExists(albumId)) {
                 res.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                res.getWriter().write(gson.toJson(new ErrorMsg("Album not found")));
+                JsonResponseWriter.writeBody(res, ALBUM_NOT_FOUND);
                 return;
             }
-            int likes = -1;
-            int dislikes = -1;
+            Likes likesObj;
             try {
-                likes = reviewService.getAlbumLikesDislikes(albumId, "like");
-                dislikes = reviewService.getAlbumLikesDislikes(albumId, "dislike");
+                likesObj = reviewService.getAlbumLikes(String.valueOf(albumId));
             } catch (SQLException e) {
                 res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                res.getWriter().write(gson.toJson(new ErrorMsg("Failed to get album likes/dislikes")));
+                JsonResponseWriter.writeBody(res, GET_LIKES_FAILED);
                 e.printStackTrace();
                 return;
             }
 
-            Likes likesObj = new Likes(likes, dislikes);
             res.setStatus(HttpServletResponse.SC_OK);
-            res.setContentType("application/json");
-            res.setCharacterEncoding("UTF-8");
-            res.getWriter().write(gson.toJson(likesObj));
+            JsonResponseWriter.writeLikes(res, likesObj);
 
         } catch (Exception e) {
             res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Internal server error")));
+            JsonResponseWriter.writeBody(res, INTERNAL_ERROR);
             e.printStackTrace();
         }
     }
 
-    /**
-     * Validates the URL format for Get request.
-     *
-     * @param urlPath An array of URL segments.
-     * @return true if the URL is valid, false otherwise.
-     */
-    private boolean isGetUrlValid(String[] urlPath) {
-        // urlPath  = "/123"
-        // urlParts = [, 123]
-        return urlPath.length == 2 && "".equals(urlPath[0]);
-    }
-
-    /**
-     * Validates the URL format for Post request.
-     *
-     * @param pathParts An array of URL segments.
-     * @return true if the URL is valid, false otherwise.
-     */
-    private boolean isPostUrlValid(String[] pathParts) {
-        // urlPath  = /{likeornot}/{albumID}
-        // urlParts = [, likeornot, albumId]
-        return pathParts.length == 3 && "".equals(pathParts[0]) && (pathParts[1].equals("like") || pathParts[1].equals("dislike")) && !pathParts[2].isEmpty();
+    private void writeRouteError(HttpServletResponse res, PathRoute.Error error) throws IOException {
+        res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        switch (error) {
+            case MISSING:
+                JsonResponseWriter.writeBody(res, MISSING_PARAMETERS);
+                break;
+            case INVALID_ID:
+                JsonResponseWriter.writeBody(res, INVALID_ALBUM_ID);
+                break;
+            default:
+                JsonResponseWriter.writeBody(res, INVALID_URL);
+        }
     }
 
-    private boolean albumExists(String albumId) throws SQLException {
-        return albumService.getAlbum(Integer.parseInt(albumId)) != null;
+    private boolean albumExists(int albumId) throws SQLException {
+        return albumService.albumExists(albumId);
     }
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse res) throws IOException {
-        String pathInfo = req.getPathInfo(); // /{likeornot}/{albumID}
-        // Check if we have a URL path
-        if (pathInfo == null || pathInfo.isEmpty()) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            ErrorMsg noParameterError = new ErrorMsg("Missing parameters");
-            res.getWriter().write(gson.toJson(noParameterError));
+        // /{likeornot}/{albumID}
+        PathRoute route = PathRoute.parseReview(req.getPathInfo());
+        if (!route.isValid()) {
+            writeRouteError(res, route.getError());
             return;
         }
-        String[] pathParts = pathInfo.split("/");
-        if (!isPostUrlValid(pathParts)) {
-            res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Invalid URL format")));
+        // The route is reused by this thread, so copy the values the async stages need
+        boolean like = route.isLike();
+        int albumId = route.getAlbumId();
+
+        CompletableFuture<PostResult> result = checkAlbumAsync(albumId)
+                .thenCompose(notFound -> notFound != null
+                        ? CompletableFuture.completedFuture(notFound)
+                        : publishReview(like, albumId));
+
+        if (!req.isAsyncSupported()) {
+            // Something in the filter chain or the registration cannot go async; still answer, but say so loudly
+            if (syncFallbackLogged.compareAndSet(false, true)) {
+                log("SEVERE: async is not supported for " + req.getRequestURI() + ", POST /review blocks a container "
+                        + "thread until the broker confirms. Check <async-supported> on the servlet and its filters.");
+            }
+            writeResult(res, result.join());
             return;
         }
-        String likeOrNot = pathParts[1];
-        String albumId = pathParts[2];
+        // Park the request and release the container thread; the response is written once the broker confirms
+        AsyncContext asyncContext = req.startAsync();
+        asyncContext.setTimeout(asyncTimeoutMillis);
+        AtomicBoolean responded = new AtomicBoolean();
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (responded.compareAndSet(false, true)) {
+                    writeResult(res, new PostResult(HttpServletResponse.SC_SERVICE_UNAVAILABLE, CONFIRM_TIMEOUT));
+                    asyncContext.complete();
+                }
+            }
 
-        try {
-            if (!albumExists(albumId)) {
-                res.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                res.getWriter().write(gson.toJson(new ErrorMsg("Album not found")));
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                responded.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        result.whenCompleteAsync((postResult, error) -> {
+            if (!responded.compareAndSet(false, true)) {
                 return;
             }
-        } catch (SQLException e) {
-            res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            res.getWriter().write(gson.toJson(new ErrorMsg("Failed to check AlbumId")));
-            e.printStackTrace();
-            return;
-        }
-        try {
-            Channel channel = channelPool.borrowObject();
             try {
-                channel.queueDeclare("reviewQueue", false, false, false, null);
-                // publish to MQ
-                String message = likeOrNot + "," + albumId;
-                channel.basicPublish("", "reviewQueue", null, message.getBytes());
-                res.setStatus(HttpServletResponse.SC_CREATED);
+                writeResult(res, postResult);
+            } catch (IOException e) {
+                e.printStackTrace();
             } finally {
-                channelPool.returnObject(channel);
+                asyncContext.complete();
             }
-        } catch (Exception e) {
+        }, reviewExecutor);
+    }
+
+    /**
+     * Runs {@link #checkAlbum} on the album check executor. When its queue is full the request is
+     * answered with 503 at once instead of waiting.
+     */
+    private CompletableFuture<PostResult> checkAlbumAsync(int albumId) {
+        try {
+            return CompletableFuture.supplyAsync(() -> checkAlbum(albumId), albumCheckExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(new PostResult(HttpServletResponse.SC_SERVICE_UNAVAILABLE, SERVER_BUSY));
+        }
+    }
+
+    /**
+     * Checks that the album exists.
+     *
+     * @return null if the album exists, otherwise the error result to send.
+     */
+    private PostResult checkAlbum(int albumId) {
+        try {
+            return albumExists(albumId) ? null : new PostResult(HttpServletResponse.SC_NOT_FOUND, ALBUM_NOT_FOUND);
+        } catch (SQLException e) {
             e.printStackTrace();
-            res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return new PostResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, CHECK_ALBUM_FAILED);
+        }
+    }
+
+    /**
+     * Publishes a review and maps the broker's confirm (or its absence) to the response.
+     * The like/dislike counter is only bumped for confirmed reviews.
+     */
+    private CompletableFuture<PostResult> publishReview(boolean like, int albumId) {
+        return reviewPublisher.publish(encodeReview(like, albumId))
+                .orTimeout(confirmTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((confirmed, error) -> {
+                    if (error == null) {
+                        // Update like/dislike counter in Redis, coalesced and written behind the request
+                        likeCountAccumulator.add(albumId, like);
+                        return new PostResult(HttpServletResponse.SC_CREATED, null);
+                    }
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof RejectedExecutionException) {
+                        return new PostResult(HttpServletResponse.SC_SERVICE_UNAVAILABLE, QUEUE_BUSY);
+                    }
+                    if (cause instanceof TimeoutException) {
+                        return new PostResult(HttpServletResponse.SC_SERVICE_UNAVAILABLE, CONFIRM_TIMEOUT);
+                    }
+                    cause.printStackTrace();
+                    return new PostResult(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, PUBLISH_FAILED);
+                });
+    }
+
+    private void writeResult(HttpServletResponse res, PostResult result) throws IOException {
+        res.setStatus(result.status);
+        if (result.error != null) {
+            JsonResponseWriter.writeBody(res, result.error);
         }
-        // Update like/dislike counter in Redis
-        reviewService.updateAlbumLikesDislikesInCache(albumId, likeOrNot, 1);
+    }
+
+    /**
+     * Builds the queue message for a review, in the legacy text form if REVIEW_MESSAGE_FORMAT=csv
+     * (for consumers that do not understand the binary envelope yet).
+     */
+    private byte[] encodeReview(boolean like, int albumId) {
+        if (legacyMessageFormat) {
+            return ((like ? "like," : "dislike,") + albumId).getBytes(StandardCharsets.UTF_8);
+        }
+        UUID reviewId = UUIDUtil.timeOrderedUUID();
+        byte[] body = new byte[ReviewMessageCodec.ENCODED_SIZE];
+        ReviewMessageCodec.encode(body, 0, like, albumId,
+                System.currentTimeMillis(), reviewId.getMostSignificantBits(), reviewId.getLeastSignificantBits());
+        return body;
+    }
+
+    /**
+     * The status and, for failures, the encoded error body of a POST /review response.
+     */
+    private static class PostResult {
+        private final int status;
+        private final byte[] error;
+
+        PostResult(int status, byte[] error) {
+            this.status = status;
+            this.error = error;
+        }
+    }
+
+    private static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
     }
 
     @Override
     public void destroy() {
         super.destroy();
+        // Fail whatever the publisher still holds first, so the parked requests are answered by
+        // callbacks on the executor before it is drained
+        if (reviewPublisher != null) {
+            reviewPublisher.close();
+        }
+        if (albumCheckExecutor != null) {
+            albumCheckExecutor.shutdown();
+            try {
+                albumCheckExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (reviewExecutor != null) {
+            reviewExecutor.shutdown();
+            try {
+                reviewExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (likeCountAccumulator != null) {
+            likeCountAccumulator.close();
+        }
         if (connection != null) {
             try {
                 connection.close();
@@ -186,6 +351,7 @@ public class ReviewServlet extends HttpServlet {
         }
 
         if (channelPool != null) {
+            System.out.println("RabbitMQ channel pool: " + channelPool);
             channelPool.close();
         }
     }
@@ -0,0 +1,98 @@
+package util;
+
+import javax.servlet.http.Part;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An uploaded image, left where the container stored it while parsing the request. Parts up to
+ * {@link #MEMORY_THRESHOLD} bytes stay in the container's memory and larger ones in its temp file
+ * (the servlets pass the threshold as their {@code @MultipartConfig} fileSizeThreshold), so the
+ * image is never copied into a second buffer. The part is read once here to compute its size and
+ * SHA-256 digest, and once more by the image store through {@link #openStream()}.
+ */
+public class ImageUploadBuffer implements Closeable {
+    /**
+     * Largest image part the container keeps in memory. A {@code <multipart-config>} for the
+     * servlet in web.xml overrides it per deployment.
+     */
+    public static final int MEMORY_THRESHOLD = 1024 * 1024;
+    private static final int DIGEST_CHUNK_SIZE = 8 * 1024;
+
+    private final Part part;
+    private final long size;
+    private final String sha256Hex;
+
+    private ImageUploadBuffer(Part part, long size, String sha256Hex) {
+        this.part = part;
+        this.size = size;
+        this.sha256Hex = sha256Hex;
+    }
+
+    /**
+     * Hashes an image part in place.
+     *
+     * @param part The image part of a multipart request.
+     * @return A buffer that reads the image from the part.
+     */
+    public static ImageUploadBuffer fromPart(Part part) throws IOException {
+        MessageDigest digest = newSha256Digest();
+        byte[] chunk = new byte[DIGEST_CHUNK_SIZE];
+        long size = 0;
+        try (InputStream in = part.getInputStream()) {
+            int n;
+            while ((n = in.read(chunk)) != -1) {
+                digest.update(chunk, 0, n);
+                size += n;
+            }
+        }
+        return new ImageUploadBuffer(part, size, toHex(digest.digest()));
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hexDigits = "0123456789abcdef".toCharArray();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = hexDigits[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = hexDigits[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the lowercase hex SHA-256 digest of the image content.
+     */
+    public String getSha256Hex() {
+        return sha256Hex;
+    }
+
+    /**
+     * Opens a new stream over the stored part. Each call starts from the first byte.
+     */
+    public InputStream openStream() throws IOException {
+        return part.getInputStream();
+    }
+
+    /**
+     * Deletes the container's temp file for the part, if it has one, without waiting for the request to end.
+     */
+    @Override
+    public void close() throws IOException {
+        part.delete();
+    }
+}
@@ -0,0 +1,334 @@
+package util;
+
+import dto.AlbumInfo;
+import dto.AlbumLikes;
+import dto.ImageMetaData;
+import dto.Likes;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes the small fixed-shape response DTOs straight to UTF-8 bytes on the response output stream.
+ * The output matches Gson's defaults (null fields omitted, HTML-sensitive characters escaped), so clients
+ * see the same JSON as before. Each thread reuses one growable buffer, and error bodies, whose messages
+ * are constants, are encoded once up front with {@link #errorBody(String)}.
+ */
+public final class JsonResponseWriter {
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    private static final int INITIAL_CAPACITY = 256;
+    // Buffers that grew past this are not kept for the next response
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+    private static final ThreadLocal<JsonResponseWriter> BUFFERS = ThreadLocal.withInitial(JsonResponseWriter::new);
+
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[] MIN_INT = ascii(String.valueOf(Integer.MIN_VALUE));
+    private static final byte[] MSG = ascii("\"msg\":");
+    private static final byte[] ARTIST = ascii("\"artist\":");
+    private static final byte[] TITLE = ascii("\"title\":");
+    private static final byte[] YEAR = ascii("\"year\":");
+    private static final byte[] LIKES = ascii("\"likes\":");
+    private static final byte[] DISLIKES = ascii("\"dislikes\":");
+    private static final byte[] ALBUM_ID = ascii("\"albumID\":");
+    private static final byte[] IMAGE_SIZE = ascii("\"imageSize\":");
+
+    private byte[] buf = new byte[INITIAL_CAPACITY];
+    private int len;
+    private boolean firstField;
+
+    private JsonResponseWriter() {
+    }
+
+    /**
+     * Encodes an {@code ErrorMsg} body once, for use with {@link #writeBody(HttpServletResponse, byte[])}.
+     *
+     * @param msg The error message.
+     * @return The UTF-8 JSON body.
+     */
+    public static byte[] errorBody(String msg) {
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writer.beginObject();
+        writer.stringField(MSG, msg);
+        writer.endObject();
+        return Arrays.copyOf(writer.buf, writer.len);
+    }
+
+    /**
+     * Writes a pre-encoded JSON body.
+     */
+    public static void writeBody(HttpServletResponse res, byte[] body) throws IOException {
+        res.setContentType(CONTENT_TYPE);
+        res.setContentLength(body.length);
+        res.getOutputStream().write(body);
+    }
+
+    /**
+     * Writes an {@code ErrorMsg} whose message is only known at runtime.
+     */
+    public static void writeError(HttpServletResponse res, String msg) throws IOException {
+        JsonResponseWriter writer = start();
+        writer.stringField(MSG, msg);
+        writer.finish(res);
+    }
+
+    public static void writeAlbumInfo(HttpServletResponse res, AlbumInfo albumInfo) throws IOException {
+        JsonResponseWriter writer = start();
+        writer.stringField(ARTIST, albumInfo.getArtist());
+        writer.stringField(TITLE, albumInfo.getTitle());
+        writer.stringField(YEAR, albumInfo.getYear());
+        writer.finish(res);
+    }
+
+    public static void writeLikes(HttpServletResponse res, Likes likes) throws IOException {
+        JsonResponseWriter writer = start();
+        writer.intField(LIKES, likes.getLikes());
+        writer.intField(DISLIKES, likes.getDislikes());
+        writer.finish(res);
+    }
+
+    public static void writeImageMetaData(HttpServletResponse res, ImageMetaData imageMetaData) throws IOException {
+        JsonResponseWriter writer = start();
+        writer.imageMetaDataFields(imageMetaData);
+        writer.finish(res);
+    }
+
+    /**
+     * Writes a JSON array of {@code ImageMetaData}.
+     */
+    public static void writeImageMetaDataList(HttpServletResponse res, List<ImageMetaData> imageMetaData) throws IOException {
+        JsonResponseWriter writer = BUFFERS.get();
+        writer.len = 0;
+        writer.append((byte) '[');
+        for (int i = 0; i < imageMetaData.size(); i++) {
+            if (i > 0) {
+                writer.append((byte) ',');
+            }
+            writer.beginObject();
+            writer.imageMetaDataFields(imageMetaData.get(i));
+            writer.endObject();
+        }
+        writer.append((byte) ']');
+        writer.send(res);
+    }
+
+    /**
+     * Writes a JSON array of {@code AlbumLikes}.
+     */
+    public static void writeAlbumLikesList(HttpServletResponse res, List<AlbumLikes> albumLikes) throws IOException {
+        JsonResponseWriter writer = BUFFERS.get();
+        writer.len = 0;
+        writer.append((byte) '[');
+        for (int i = 0; i < albumLikes.size(); i++) {
+            if (i > 0) {
+                writer.append((byte) ',');
+            }
+            AlbumLikes likes = albumLikes.get(i);
+            writer.beginObject();
+            writer.stringField(ALBUM_ID, likes.getAlbumId());
+            writer.intField(LIKES, likes.getLikes());
+            writer.intField(DISLIKES, likes.getDislikes());
+            writer.endObject();
+        }
+        writer.append((byte) ']');
+        writer.send(res);
+    }
+
+    private void imageMetaDataFields(ImageMetaData imageMetaData) {
+        stringField(ALBUM_ID, imageMetaData.getAlbumId());
+        stringField(IMAGE_SIZE, imageMetaData.getImageSize());
+    }
+
+    private static JsonResponseWriter start() {
+        JsonResponseWriter writer = BUFFERS.get();
+        writer.len = 0;
+        writer.beginObject();
+        return writer;
+    }
+
+    private void finish(HttpServletResponse res) throws IOException {
+        endObject();
+        send(res);
+    }
+
+    private void send(HttpServletResponse res) throws IOException {
+        res.setContentType(CONTENT_TYPE);
+        res.setContentLength(len);
+        try {
+            res.getOutputStream().write(buf, 0, len);
+        } finally {
+            if (buf.length > MAX_RETAINED_CAPACITY) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    private void beginObject() {
+        append((byte) '{');
+        firstField = true;
+    }
+
+    private void endObject() {
+        append((byte) '}');
+    }
+
+    private void fieldName(byte[] name) {
+        if (!firstField) {
+            append((byte) ',');
+        }
+        firstField = false;
+        append(name);
+    }
+
+    private void stringField(byte[] name, String value) {
+        // Gson leaves out null fields
+        if (value == null) {
+            return;
+        }
+        fieldName(name);
+        appendString(value);
+    }
+
+    private void intField(byte[] name, int value) {
+        fieldName(name);
+        appendInt(value);
+    }
+
+    private void appendInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            append(MIN_INT);
+            return;
+        }
+        if (value < 0) {
+            append((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (int rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = len + digits - 1; i >= len; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        len += digits;
+    }
+
+    private void appendString(String value) {
+        ensureCapacity(value.length() + 2);
+        buf[len++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    append((byte) '\\', (byte) '"');
+                    break;
+                case '\\':
+                    append((byte) '\\', (byte) '\\');
+                    break;
+                case '\t':
+                    append((byte) '\\', (byte) 't');
+                    break;
+                case '\b':
+                    append((byte) '\\', (byte) 'b');
+                    break;
+                case '\n':
+                    append((byte) '\\', (byte) 'n');
+                    break;
+                case '\r':
+                    append((byte) '\\', (byte) 'r');
+                    break;
+                case '\f':
+                    append((byte) '\\', (byte) 'f');
+                    break;
+                // Escaped by Gson's HTML-safe default
+                case '<':
+                case '>':
+                case '&':
+                case '=':
+                case '\'':
+                case '\u2028':
+                case '\u2029':
+                    appendUnicodeEscape(c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        appendUnicodeEscape(c);
+                    } else {
+                        i = appendUtf8(value, i, c);
+                    }
+            }
+        }
+        append((byte) '"');
+    }
+
+    /**
+     * Appends one character as UTF-8.
+     *
+     * @return The index of the last char consumed, which is i + 1 for a surrogate pair.
+     */
+    private int appendUtf8(String value, int i, char c) {
+        if (c < 0x80) {
+            append((byte) c);
+        } else if (c < 0x800) {
+            append((byte) (0xc0 | c >> 6), (byte) (0x80 | c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, value.charAt(i + 1));
+            ensureCapacity(4);
+            buf[len++] = (byte) (0xf0 | cp >> 18);
+            buf[len++] = (byte) (0x80 | cp >> 12 & 0x3f);
+            buf[len++] = (byte) (0x80 | cp >> 6 & 0x3f);
+            buf[len++] = (byte) (0x80 | cp & 0x3f);
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            // Unpaired surrogate, replaced the same way String.getBytes does
+            append((byte) '?');
+        } else {
+            ensureCapacity(3);
+            buf[len++] = (byte) (0xe0 | c >> 12);
+            buf[len++] = (byte) (0x80 | c >> 6 & 0x3f);
+            buf[len++] = (byte) (0x80 | c & 0x3f);
+        }
+        return i;
+    }
+
+    private void appendUnicodeEscape(char c) {
+        ensureCapacity(6);
+        buf[len++] = '\\';
+        buf[len++] = 'u';
+        buf[len++] = HEX[c >> 12 & 0xf];
+        buf[len++] = HEX[c >> 8 & 0xf];
+        buf[len++] = HEX[c >> 4 & 0xf];
+        buf[len++] = HEX[c & 0xf];
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        buf[len++] = b;
+    }
+
+    private void append(byte b1, byte b2) {
+        ensureCapacity(2);
+        buf[len++] = b1;
+        buf[len++] = b2;
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (len + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,178 @@
+package util;
+
+/**
+ * Parses the path info of album and review requests in a single pass over its chars, without
+ * splitting it or allocating substrings. Recognized shapes are {@code /{albumId}},
+ * {@code /{albumId}/image} and {@code /{like|dislike}/{albumId}}, each optionally followed by one
+ * trailing slash.
+ *
+ * Each thread reuses one instance, so callers must copy out the values they need before
+ * parsing another path or handing work to another thread.
+ */
+public final class PathRoute {
+    private static final ThreadLocal<PathRoute> ROUTES = ThreadLocal.withInitial(PathRoute::new);
+    private static final String LIKE = "like/";
+    private static final String DISLIKE = "dislike/";
+    private static final String IMAGE = "/image";
+
+    /**
+     * Why a path did not parse.
+     * MISSING: there is no path info. INVALID_FORMAT: the segments do not match the expected shape.
+     * INVALID_ID: the album ID is not a non-negative int.
+     */
+    public enum Error {
+        MISSING, INVALID_FORMAT, INVALID_ID
+    }
+
+    private Error error;
+    private boolean like;
+    private boolean image;
+    private int albumId;
+
+    private PathRoute() {
+    }
+
+    /**
+     * Parses {@code /{albumId}}.
+     *
+     * @param pathInfo The request path info, may be null.
+     * @return This thread's route, holding either the album ID or an error.
+     */
+    public static PathRoute parseAlbum(String pathInfo) {
+        PathRoute route = reset();
+        if (route.checkPresent(pathInfo)) {
+            route.parseAlbumId(pathInfo, 1, trimTrailingSlash(pathInfo, 1));
+        }
+        return route;
+    }
+
+    /**
+     * Parses {@code /{albumId}} or {@code /{albumId}/image}; {@link #isImage()} tells which one matched.
+     *
+     * @param pathInfo The request path info, may be null.
+     * @return This thread's route, holding either the album ID or an error.
+     */
+    public static PathRoute parseAlbumResource(String pathInfo) {
+        PathRoute route = reset();
+        if (!route.checkPresent(pathInfo)) {
+            return route;
+        }
+        int end = trimTrailingSlash(pathInfo, 1);
+        int imageStart = end - IMAGE.length();
+        if (imageStart > 1 && pathInfo.startsWith(IMAGE, imageStart)) {
+            route.image = true;
+            end = imageStart;
+        }
+        route.parseAlbumId(pathInfo, 1, end);
+        return route;
+    }
+
+    /**
+     * Parses {@code /{like|dislike}/{albumId}}.
+     *
+     * @param pathInfo The request path info, may be null.
+     * @return This thread's route, holding the review kind and album ID or an error.
+     */
+    public static PathRoute parseReview(String pathInfo) {
+        PathRoute route = reset();
+        if (!route.checkPresent(pathInfo)) {
+            return route;
+        }
+        if (pathInfo.startsWith(LIKE, 1)) {
+            route.like = true;
+            route.parseAlbumId(pathInfo, 1 + LIKE.length(), trimTrailingSlash(pathInfo, 1 + LIKE.length()));
+        } else if (pathInfo.startsWith(DISLIKE, 1)) {
+            route.like = false;
+            route.parseAlbumId(pathInfo, 1 + DISLIKE.length(), trimTrailingSlash(pathInfo, 1 + DISLIKE.length()));
+        } else {
+            route.error = Error.INVALID_FORMAT;
+        }
+        return route;
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    public Error getError() {
+        return error;
+    }
+
+    public boolean isLike() {
+        return like;
+    }
+
+    public boolean isImage() {
+        return image;
+    }
+
+    public int getAlbumId() {
+        return albumId;
+    }
+
+    private static PathRoute reset() {
+        PathRoute route = ROUTES.get();
+        route.error = null;
+        route.like = false;
+        route.image = false;
+        route.albumId = 0;
+        return route;
+    }
+
+    private boolean checkPresent(String pathInfo) {
+        if (pathInfo == null || pathInfo.isEmpty()) {
+            error = Error.MISSING;
+            return false;
+        }
+        if (pathInfo.charAt(0) != '/') {
+            error = Error.INVALID_FORMAT;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the end of the path without its trailing slash, if there is one past start.
+     */
+    private static int trimTrailingSlash(String path, int start) {
+        int end = path.length();
+        return end > start && path.charAt(end - 1) == '/' ? end - 1 : end;
+    }
+
+    /**
+     * Parses the segment from start to end as the album ID. A slash anywhere in it means the path has
+     * too many segments, which is reported as INVALID_FORMAT even after a bad ID char, as splitting
+     * the path on slashes first would.
+     */
+    private void parseAlbumId(String path, int start, int end) {
+        if (start >= end) {
+            error = Error.INVALID_FORMAT;
+            return;
+        }
+        long value = 0;
+        boolean validId = true;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c == '/') {
+                error = Error.INVALID_FORMAT;
+                return;
+            }
+            if (!validId) {
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                validId = false;
+                continue;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                validId = false;
+            }
+        }
+        if (validId) {
+            albumId = (int) value;
+        } else {
+            error = Error.INVALID_ID;
+        }
+    }
+}
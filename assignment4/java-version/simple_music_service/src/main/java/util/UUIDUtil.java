@@ -2,8 +2,34 @@ package util;
 
 import java.nio.ByteBuffer;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class UUIDUtil {
+    // (unix millis << 12) | 12-bit sequence of the last generated time-ordered UUID
+    private static final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    /**
+     * Generates a time-ordered UUID in the version 7 layout: 48 bits of unix milliseconds, a 12-bit
+     * sequence, then 62 random bits. IDs from one JVM are strictly increasing even when many threads
+     * generate them in the same millisecond (the sequence carries into the timestamp if it overflows),
+     * so rows keyed by them are appended to the right edge of a B-tree index instead of splitting pages at random.
+     * Generation is lock-free: threads race on a single compare-and-set.
+     */
+    public static UUID timeOrderedUUID() {
+        long now = System.currentTimeMillis() << 12;
+        long prev;
+        long next;
+        do {
+            prev = lastTimeAndSequence.get();
+            next = Math.max(prev + 1, now);
+        } while (!lastTimeAndSequence.compareAndSet(prev, next));
+
+        long mostSigBits = ((next >>> 12) << 16) | 0x7000L | (next & 0xfffL);
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
     public static byte[] uuidToBytes(UUID uuid) {
         ByteBuffer bb = ByteBuffer.wrap(new byte[16]);
         bb.putLong(uuid.getMostSignificantBits());